@@ -0,0 +1,53 @@
+package controller;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** {@link Bankroll#onRound} throughput over a fixed random round sequence. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BankrollBenchmark {
+
+    private static final int ROUNDS = 4096;
+
+    private final Bankroll.Pred[] preds = new Bankroll.Pred[ROUNDS];
+    private final Bankroll.Actual[] actuals = new Bankroll.Actual[ROUNDS];
+    private Bankroll bankroll;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(11);
+        Bankroll.Pred[] p = Bankroll.Pred.values();
+        for (int i = 0; i < ROUNDS; i++) {
+            preds[i] = p[rnd.nextInt(p.length)];
+            actuals[i] = rnd.nextBoolean() ? Bankroll.Actual.T : Bankroll.Actual.X;
+        }
+        // cap để stake không tăng vô hạn qua hàng tỉ ván
+        bankroll = new Bankroll(3.0, 2.0, 3000.0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUNDS)
+    public double onRound() {
+        Bankroll b = bankroll;
+        for (int i = 0; i < ROUNDS; i++) {
+            b.onRound(preds[i], actuals[i]);
+        }
+        return b.getProfit();
+    }
+}
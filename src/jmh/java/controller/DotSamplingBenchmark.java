@@ -0,0 +1,137 @@
+package controller;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dot sampling on a synthetic capture the size of the scanner's ROI
+ * ((408,591) -> (880,590), PATCH=8, MARGIN=20).  {@code legacySample} is the
+ * old getRGB + double + copy/sort path, kept as the reference point.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DotSamplingBenchmark {
+
+    private static final int NUM_DOTS = 13, PATCH = 8, MARGIN = 20;
+
+    /** Pixel noise amplitude on top of the dot/background levels. */
+    @Param({"10", "40"})
+    public int noise;
+
+    private BufferedImage img;
+    private final int[] cx = new int[NUM_DOTS];
+    private int cy;
+    private DotSampler sampler;
+    private int[] bright;
+
+    @Setup
+    public void setup() {
+        int span = 880 - 408;
+        int w = span + 2 * (MARGIN + PATCH) + 1, h = 2 * (MARGIN + PATCH) + 1;
+        img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        cy = h / 2;
+        Random rnd = new Random(7);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                img.setRGB(x, y, gray(200 + rnd.nextInt(noise)));
+            }
+        }
+        for (int i = 0; i < NUM_DOTS; i++) {
+            cx[i] = MARGIN + PATCH + (int) Math.round(i * span / (double) (NUM_DOTS - 1));
+            boolean dark = rnd.nextBoolean();
+            for (int y = cy - PATCH; y <= cy + PATCH; y++) {
+                for (int x = cx[i] - PATCH; x <= cx[i] + PATCH; x++) {
+                    img.setRGB(x, y, gray((dark ? 40 : 150) + rnd.nextInt(noise)));
+                }
+            }
+        }
+        sampler = new DotSampler(NUM_DOTS);
+        sampler.sample(img, cx, cy, PATCH);
+        bright = sampler.lastBrightness().clone();
+    }
+
+    private static int gray(int g) {
+        g = Math.min(255, g);
+        return (g << 16) | (g << 8) | g;
+    }
+
+    @Benchmark
+    public int avgBrightness13() {
+        int s = 0;
+        for (int i = 0; i < NUM_DOTS; i++) {
+            s += DotSampler.avgBrightness(img, cx[i], cy, PATCH);
+        }
+        return s;
+    }
+
+    @Benchmark
+    public int kmeans2Threshold() {
+        return sampler.kmeans2Threshold(bright);
+    }
+
+    @Benchmark
+    public int sampleFrame() {
+        return sampler.sample(img, cx, cy, PATCH);
+    }
+
+    @Benchmark
+    public int legacySample() {
+        double[] b = new double[NUM_DOTS];
+        for (int i = 0; i < NUM_DOTS; i++) {
+            b[i] = legacyAvgBrightness(img, cx[i], cy, PATCH);
+        }
+        double thr = legacyKmeans2Threshold(b);
+        int bits = 0;
+        for (double v : b) bits = (bits << 1) | (v < thr ? 1 : 0);
+        return bits;
+    }
+
+    // ===== đường cũ của DotScannerService, giữ nguyên để so sánh =====
+    static double legacyAvgBrightness(BufferedImage img, int cx, int cy, int r) {
+        int x0 = Math.max(0, cx - r), x1 = Math.min(img.getWidth()-1,  cx + r);
+        int y0 = Math.max(0, cy - r), y1 = Math.min(img.getHeight()-1, cy + r);
+        long sum=0, cnt=0;
+        for (int y=y0; y<=y1; y++)
+            for (int x=x0; x<=x1; x++) {
+                int rgb = img.getRGB(x,y);
+                int R=(rgb>>16)&255, G=(rgb>>8)&255, B=rgb&255;
+                int lum = (int)Math.round(0.299*R + 0.587*G + 0.114*B);
+                sum += lum; cnt++;
+            }
+        return (double)sum/Math.max(1,cnt);
+    }
+
+    static double legacyKmeans2Threshold(double[] v){
+        double[] a = Arrays.copyOf(v, v.length);
+        Arrays.sort(a);
+        double m1=a[3], m2=a[a.length-4];
+        for(int it=0; it<10; it++){
+            double s1=0,c1=0,s2=0,c2=0;
+            for(double x: v){
+                if (Math.abs(x-m1)<=Math.abs(x-m2)) { s1+=x; c1++; }
+                else { s2+=x; c2++; }
+            }
+            double n1=c1>0?s1/c1:m1, n2=c2>0?s2/c2:m2;
+            if (Math.abs(n1-m1)+Math.abs(n2-m2)<0.01){ m1=n1; m2=n2; break; }
+            m1=n1; m2=n2;
+        }
+        return (m1+m2)/2.0;
+    }
+}
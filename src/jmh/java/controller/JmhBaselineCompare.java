@@ -0,0 +1,76 @@
+package controller;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON result with the committed baseline and fails when any
+ * benchmark got worse by more than the threshold (percent).  Throughput
+ * modes regress when the score drops, time modes when it rises.
+ *
+ * Usage: {@code JmhBaselineCompare <baseline.json> <result.json> [thresholdPct=10]}
+ */
+public class JmhBaselineCompare {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, JsonObject> base = load(Path.of(args[0]));
+        Map<String, JsonObject> cur = load(Path.of(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+        for (Map.Entry<String, JsonObject> e : cur.entrySet()) {
+            JsonObject c = e.getValue(), b = base.get(e.getKey());
+            double cs = score(c);
+            String unit = c.getAsJsonObject("primaryMetric").get("scoreUnit").getAsString();
+            if (b == null) {
+                System.out.printf("%-70s %14s %14.3f %9s  %s (new)%n", e.getKey(), "-", cs, "", unit);
+                continue;
+            }
+            double bs = score(b);
+            double pct = (cs - bs) / bs * 100.0;
+            boolean higherIsBetter = c.get("mode").getAsString().equals("thrpt");
+            double worse = higherIsBetter ? -pct : pct;
+            boolean regressed = worse > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%%  %s%s%n",
+                    e.getKey(), bs, cs, pct, unit, regressed ? "  <-- REGRESSION" : "");
+        }
+        for (String k : base.keySet()) {
+            if (!cur.containsKey(k)) {
+                System.out.printf("%-70s (missing from current run)%n", k);
+            }
+        }
+        if (regressions > 0) {
+            throw new IllegalStateException(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+        }
+    }
+
+    private static double score(JsonObject run) {
+        return run.getAsJsonObject("primaryMetric").get("score").getAsDouble();
+    }
+
+    // khoá = tên benchmark + params, vd. "model.PredictorBenchmark.getAnswer{predictor=java}"
+    private static Map<String, JsonObject> load(Path file) throws IOException {
+        Map<String, JsonObject> out = new LinkedHashMap<>();
+        JsonArray runs = JsonParser.parseString(Files.readString(file)).getAsJsonArray();
+        for (JsonElement el : runs) {
+            JsonObject run = el.getAsJsonObject();
+            StringBuilder key = new StringBuilder(run.get("benchmark").getAsString());
+            if (run.has("params")) {
+                key.append(run.getAsJsonObject("params").entrySet().toString());
+            }
+            out.put(key.toString(), run);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,76 @@
+package model;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end {@code getAnswer} latency per predictor, as Statistic calls it
+ * for one confirmed history.  "python" is the persistent predict.py worker
+ * (needs Python + TensorFlow); run with -p predictor=java,table,markov without them.
+ * Must run from the project root (model paths are relative).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PredictorBenchmark {
+
+    @Param({"python", "java", "table", "markov"})
+    public String predictor;
+
+    private Predictor p;
+    private final History[] histories = new History[64];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        p = switch (predictor) {
+            case "java" -> new KerasEngine();
+            case "table" -> PredictionTable.loadOrBuild(new KerasEngine(), KerasEngine.DEFAULT_MODEL, 13);
+            case "markov" -> trainedMarkov();
+            default -> new LLM();
+        };
+        p.warmUp();
+        for (int i = 0; i < histories.length; i++) {
+            histories[i] = History.of(i * 0x9E3779B1, 13);
+        }
+    }
+
+    // đủ dữ liệu để mọi context đều có mẫu, như sau vài giờ chơi
+    private static Predictor trainedMarkov() {
+        MarkovPredictor m = new MarkovPredictor();
+        Random rnd = new Random(1);
+        History h = History.of(rnd.nextInt(), 13);
+        for (int i = 0; i < 200_000; i++) {
+            boolean t = rnd.nextBoolean();
+            m.observe(h, t);
+            h = h.shift(t);
+        }
+        return m;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        p.close();
+    }
+
+    @Benchmark
+    public String getAnswer() {
+        return p.getAnswer(histories[next++ & 63]);
+    }
+}
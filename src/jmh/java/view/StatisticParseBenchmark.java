@@ -0,0 +1,54 @@
+package view;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** {@code Statistic.extractJsonObject} + {@code parsePick} on the response shapes seen in practice. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticParseBenchmark {
+
+    @Param({"compact", "python", "noisy", "keyword"})
+    public String shape;
+
+    private String response;
+
+    @Setup
+    public void setup() {
+        response = switch (shape) {
+            // KerasEngine / PredictionTable
+            case "compact" -> "{\"pick\":\"TAI\"}";
+            // json.dumps của predict.py
+            case "python" -> "{\"pick\": \"XIU\"}";
+            // log TF lọt vào stdout (chế độ cũ redirectErrorStream)
+            case "noisy" -> "2025-08-24 10:29:07.123456: I tensorflow/core/platform/cpu_feature_guard.cc:210] "
+                    + "This TensorFlow binary is optimized to use available CPU instructions. {\"pick\": \"SKIP\", \"out\": [0.51]}";
+            // không có JSON, chỉ có từ khoá
+            default -> "prediction: XIU (confidence low)";
+        };
+    }
+
+    @Benchmark
+    public Statistic.Pred extractAndParse() {
+        return Statistic.parsePick(Statistic.extractJsonObject(response));
+    }
+
+    @Benchmark
+    public String extractJsonObject() {
+        return Statistic.extractJsonObject(response);
+    }
+}
@@ -0,0 +1,152 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Grid search over {@link Bankroll} settings (baseBet x multiplier x stakeCap)
+ * on one decoded {@link RoundStream}.  Every configuration replays the whole
+ * stream through its own Bankroll; configurations are split across the
+ * fork-join pool and all tasks read the same stream.
+ */
+public final class BankrollSweep {
+
+    // Ít hơn số này thì chạy tuần tự trong 1 task
+    private static final int LEAF_CONFIGS = 4;
+
+    public static final class Result {
+        public final double baseBet, multiplier;
+        public final Double stakeCap;
+        public final double pnl, maxDrawdown, requiredCapital, roi;
+        public final int longestLosingStreak, roundsBet, resets;
+
+        Result(double baseBet, double multiplier, Double stakeCap, Bankroll b) {
+            this.baseBet = baseBet;
+            this.multiplier = multiplier;
+            this.stakeCap = stakeCap;
+            this.pnl = b.getProfit();
+            this.maxDrawdown = b.getMaxDrawdown();
+            this.requiredCapital = b.requiredCapitalByLongestL();
+            this.roi = b.getROI();
+            this.longestLosingStreak = b.getLongestLosingStreak();
+            this.roundsBet = b.getRoundsBet();
+            this.resets = b.getResets();
+        }
+    }
+
+    /** Best PnL first; ties broken by the smaller drawdown. */
+    public static final Comparator<Result> BY_PNL =
+            Comparator.<Result>comparingDouble(r -> -r.pnl).thenComparingDouble(r -> r.maxDrawdown);
+
+    private BankrollSweep() {
+    }
+
+    /**
+     * Runs every combination of the given values (null in {@code stakeCaps}
+     * = no cap; multipliers must be > 1) and returns them ranked by {@link #BY_PNL}.
+     */
+    public static List<Result> run(RoundStream stream, double[] baseBets, double[] multipliers, Double[] stakeCaps) {
+        for (double m : multipliers) {
+            if (m <= 1.0) {
+                throw new IllegalArgumentException("multiplier must be > 1.0: " + m);
+            }
+        }
+        for (double b : baseBets) {
+            if (b <= 0) {
+                throw new IllegalArgumentException("baseBet must be > 0: " + b);
+            }
+        }
+        int n = baseBets.length * multipliers.length * stakeCaps.length;
+        Result[] out = new Result[n];
+        ForkJoinPool.commonPool().invoke(new Slice(stream, baseBets, multipliers, stakeCaps, out, 0, n));
+        List<Result> ranked = new ArrayList<>(Arrays.asList(out));
+        ranked.sort(BY_PNL);
+        return ranked;
+    }
+
+    private static final class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final RoundStream stream;
+        final double[] baseBets, multipliers;
+        final Double[] caps;
+        final Result[] out;
+        final int from, to;
+
+        Slice(RoundStream stream, double[] baseBets, double[] multipliers, Double[] caps, Result[] out, int from, int to) {
+            this.stream = stream;
+            this.baseBets = baseBets;
+            this.multipliers = multipliers;
+            this.caps = caps;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_CONFIGS) {
+                for (int i = from; i < to; i++) {
+                    // i -> (base, mult, cap) theo thứ tự row-major
+                    int c = i % caps.length, rest = i / caps.length;
+                    int m = rest % multipliers.length, b = rest / multipliers.length;
+                    Bankroll br = new Bankroll(baseBets[b], multipliers[m], caps[c]);
+                    stream.replay(br);
+                    out[i] = new Result(baseBets[b], multipliers[m], caps[c], br);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Slice(stream, baseBets, multipliers, caps, out, from, mid),
+                    new Slice(stream, baseBets, multipliers, caps, out, mid, to));
+        }
+    }
+
+    public static void print(List<Result> ranked, int top) {
+        System.out.printf("%4s %8s %6s %9s | %12s %12s %8s %14s %8s%n",
+                "#", "baseBet", "mult", "cap", "PnL", "MDD", "longestL", "reqCapital", "ROI%");
+        for (int i = 0; i < Math.min(top, ranked.size()); i++) {
+            Result r = ranked.get(i);
+            System.out.printf("%4d %8.2f %6.2f %9s | %12.2f %12.2f %8d %14.2f %8.2f%n",
+                    i + 1, r.baseBet, r.multiplier, r.stakeCap == null ? "none" : String.format("%.0f", r.stakeCap),
+                    r.pnl, r.maxDrawdown, r.longestLosingStreak, r.requiredCapital, r.roi * 100.0);
+        }
+    }
+
+    /** "1,2,3" hoặc "lo:hi:step" (gồm cả hi). */
+    public static double[] parseGrid(String spec) {
+        if (spec.contains(":")) {
+            String[] p = spec.split(":");
+            double lo = Double.parseDouble(p[0]), hi = Double.parseDouble(p[1]), step = Double.parseDouble(p[2]);
+            if (step <= 0) {
+                throw new IllegalArgumentException("step must be > 0: " + spec);
+            }
+            int n = (int) Math.floor((hi - lo) / step + 1e-9) + 1;
+            double[] v = new double[n];
+            for (int i = 0; i < n; i++) {
+                v[i] = lo + i * step;
+            }
+            return v;
+        }
+        return Arrays.stream(spec.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    /** Như {@link #parseGrid} nhưng "none" = không cap. */
+    public static Double[] parseCaps(String spec) {
+        List<Double> caps = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            if (part.equalsIgnoreCase("none")) {
+                caps.add(null);
+            } else {
+                for (double v : parseGrid(part)) {
+                    caps.add(v);
+                }
+            }
+        }
+        return caps.toArray(new Double[0]);
+    }
+}
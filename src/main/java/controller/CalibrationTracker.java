@@ -0,0 +1,87 @@
+package controller;
+
+/**
+ * Calibration state of one table for a scanner: the current
+ * {@link DotCalibrator.Calibration} (null = nominal geometry), when to try
+ * again after a failure, and when steady-state confidence has been low for
+ * long enough to drop it.  Shared by {@link DotScannerService} and
+ * {@link MultiTableScanner}, so both recalibrate and report the same way.
+ *
+ * Failures go to {@link EventLog} as WARN on the 1st, 2nd, 4th, 8th...
+ * attempt in a row (a table that never shows its dots fails every time)
+ * and are all counted in {@link Metrics#CALIBRATION_FAILURES}.
+ *
+ * Not thread-safe: used from the scanner thread only.
+ */
+final class CalibrationTracker {
+
+    /** Frames in a row under {@link DotCalibrator#RECALIBRATE_RATIO} before recalibrating. */
+    static final int LOW_CONFIDENCE_FRAMES = 3;
+    /** After a failed calibration, frames scanned with the nominal geometry before retrying. */
+    static final int CALIBRATE_RETRY_FRAMES = 20;
+
+    private final String table;
+    private DotCalibrator.Calibration cal;
+    private long retryAt;
+    private int lowFrames;
+    private int failed;          // liên tiếp, từ lần hiệu chỉnh được gần nhất
+
+    CalibrationTracker(String table) {
+        this.table = table;
+    }
+
+    /** Current calibration, null while scanning with the nominal geometry. */
+    DotCalibrator.Calibration get() {
+        return cal;
+    }
+
+    /** True when frame {@code frame} should try to calibrate (needs a capture of the full ROI). */
+    boolean due(long frame) {
+        return cal == null && frame >= retryAt;
+    }
+
+    /** True while confidence is dropping: the frame must be sampled even if it looks unchanged. */
+    boolean lowConfidence() {
+        return lowFrames > 0;
+    }
+
+    /** Records a calibration attempt; true when it succeeded (the geometry changed). */
+    boolean offer(DotCalibrator.Calibration c, long frame) {
+        if (Metrics.ENABLED) Metrics.RECALIBRATIONS.increment();
+        lowFrames = 0;
+        if (c.ok) {
+            if (failed > 0) {
+                EventLog.msg(EventLog.INFO, table, "calibrated after " + failed + " failed attempt(s)");
+                failed = 0;
+            }
+            cal = c;
+            return true;
+        }
+        retryAt = frame + CALIBRATE_RETRY_FRAMES;
+        failed++;
+        if (Metrics.ENABLED) Metrics.CALIBRATION_FAILURES.increment();
+        // chỉ báo lần 1, 2, 4, 8... (còn lại đếm ở Metrics)
+        if (Integer.bitCount(failed) == 1) {
+            EventLog.msg(EventLog.WARN, table, String.format(
+                    "calibration failed %d time(s) (contrast=%d, residual=%.1fpx), using nominal geometry",
+                    failed, c.minContrast >> 8, c.residual));
+        }
+        return false;
+    }
+
+    /**
+     * Steady-state confidence of a sampled frame.  True when it has been low
+     * for {@link #LOW_CONFIDENCE_FRAMES} frames: the calibration is dropped
+     * (back to the nominal geometry) and retried at {@code frame}.
+     */
+    boolean check(double confidence, long frame) {
+        lowFrames = confidence < DotCalibrator.RECALIBRATE_RATIO ? lowFrames + 1 : 0;
+        if (lowFrames < LOW_CONFIDENCE_FRAMES) {
+            return false;
+        }
+        cal = null;
+        lowFrames = 0;
+        retryAt = frame;
+        return true;
+    }
+}
@@ -0,0 +1,207 @@
+package controller;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Finds the real dot centres of one {@link TableRegion} in a capture of its
+ * full, margin-padded ROI, so that steady-state scanning can capture only
+ * the tight box around the dots.
+ *
+ * Each dot is searched for around its nominal position (within the margin,
+ * and less than half the dot spacing so a search never reaches the next
+ * dot).  A candidate centre scores |patch mean - background|, where the
+ * background is the median luma of the capture; patch means come from a
+ * summed-area table, so every candidate is O(1).  The centre of the
+ * plateau of near-best scores is taken, then a straight, evenly spaced
+ * row is least-squares fitted through the 13 centres: one stray match
+ * cannot move a dot.
+ *
+ * The calibration is trusted only when every fitted dot stands out from
+ * the background by {@link #MIN_CONTRAST} and the fit residual is small.
+ */
+final class DotCalibrator {
+
+    /** Luma difference (x256) a dot needs against the background: 16 grey levels. */
+    static final int MIN_CONTRAST = 16 * 256;
+    /** Max RMS distance (px) between found centres and the fitted row. */
+    static final double MAX_RESIDUAL = 3.0;
+    /** Steady state: recalibrate when contrast falls under this share of the calibrated one. */
+    static final double RECALIBRATE_RATIO = 0.5;
+
+    /** Result in screen coordinates. */
+    static final class Calibration {
+        final int[] cx, cy;          // tâm chấm trên màn hình
+        final Rectangle tight;       // hộp nhỏ nhất chứa mọi patch
+        final int minContrast;       // |chấm - nền| nhỏ nhất lúc hiệu chỉnh
+        final double residual;
+        final boolean ok;
+
+        Calibration(int[] cx, int[] cy, Rectangle tight, int minContrast, double residual, boolean ok) {
+            this.cx = cx;
+            this.cy = cy;
+            this.tight = tight;
+            this.minContrast = minContrast;
+            this.residual = residual;
+            this.ok = ok;
+        }
+
+        /** Centre x/y relative to the tight capture. */
+        int[] cxIn(Rectangle r) {
+            int[] out = new int[cx.length];
+            for (int i = 0; i < cx.length; i++) {
+                out[i] = cx[i] - r.x;
+            }
+            return out;
+        }
+
+        int[] cyIn(Rectangle r) {
+            int[] out = new int[cy.length];
+            for (int i = 0; i < cy.length; i++) {
+                out[i] = cy[i] - r.y;
+            }
+            return out;
+        }
+    }
+
+    private DotCalibrator() {
+    }
+
+    /** {@code img} is a capture of {@code origin} (normally {@code region.roi()}). */
+    static Calibration calibrate(BufferedImage img, Rectangle origin, TableRegion region) {
+        int n = TableRegion.NUM_DOTS, r = TableRegion.PATCH;
+        int w = img.getWidth(), h = img.getHeight();
+        long[] sat = new long[(w + 1) * (h + 1)];
+        int[] hist = new int[256];
+        for (int y = 0; y < h; y++) {
+            long row = 0;
+            for (int x = 0; x < w; x++) {
+                int l = DotSampler.luma256(img.getRGB(x, y));
+                hist[l >> 8]++;
+                row += l;
+                sat[(y + 1) * (w + 1) + x + 1] = sat[y * (w + 1) + x + 1] + row;
+            }
+        }
+        int bg = median(hist, w * h) << 8;
+
+        int[] nx = region.centersX(origin);
+        int ny = region.centerY(origin);
+        double spacing = Math.abs(region.last().x - region.first().x) / (double) (n - 1);
+        int search = (int) Math.max(1, Math.min(Math.max(TableRegion.MARGIN_X, TableRegion.MARGIN_Y), spacing / 2 - 1));
+        double[] fx = new double[n], fy = new double[n];
+        for (int i = 0; i < n; i++) {
+            int best = -1;
+            for (int y = ny - search; y <= ny + search; y++) {
+                for (int x = nx[i] - search; x <= nx[i] + search; x++) {
+                    best = Math.max(best, Math.abs(mean(sat, w, h, x, y, r) - bg));
+                }
+            }
+            // tâm của vùng điểm gần tốt nhất (chấm to hơn patch -> có cả một "cao nguyên")
+            long sx = 0, sy = 0, cnt = 0;
+            int floor = best - Math.max(1, best / 10);
+            for (int y = ny - search; y <= ny + search; y++) {
+                for (int x = nx[i] - search; x <= nx[i] + search; x++) {
+                    if (Math.abs(mean(sat, w, h, x, y, r) - bg) >= floor) {
+                        sx += x;
+                        sy += y;
+                        cnt++;
+                    }
+                }
+            }
+            fx[i] = (double) sx / cnt;
+            fy[i] = (double) sy / cnt;
+        }
+
+        // hàng thẳng, cách đều: x_i = ax + bx*i, y_i = ay + by*i
+        double[] lx = fitLine(fx), ly = fitLine(fy);
+        int[] cx = new int[n], cy = new int[n];
+        double sq = 0;
+        int minContrast = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            double px = lx[0] + lx[1] * i, py = ly[0] + ly[1] * i;
+            sq += (px - fx[i]) * (px - fx[i]) + (py - fy[i]) * (py - fy[i]);
+            int ix = (int) Math.round(px), iy = (int) Math.round(py);
+            minContrast = Math.min(minContrast, Math.abs(mean(sat, w, h, ix, iy, r) - bg));
+            cx[i] = ix + origin.x;
+            cy[i] = iy + origin.y;
+        }
+        double residual = Math.sqrt(sq / n);
+
+        int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE, x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            x0 = Math.min(x0, cx[i] - r);
+            x1 = Math.max(x1, cx[i] + r);
+            y0 = Math.min(y0, cy[i] - r);
+            y1 = Math.max(y1, cy[i] + r);
+        }
+        Rectangle tight = new Rectangle(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+        boolean ok = minContrast >= MIN_CONTRAST && residual <= MAX_RESIDUAL;
+        return new Calibration(cx, cy, tight, minContrast, residual, ok);
+    }
+
+    /**
+     * Steady-state check on a capture of {@code c.tight}: the weakest dot's
+     * contrast against the background in the gaps between dots, as a share
+     * of the calibrated contrast.  1.0 when there are no usable gaps.
+     */
+    static double confidence(BufferedImage img, Calibration c, int[] bright) {
+        return confidence(img, c.tight, c, bright);
+    }
+
+    /** Same, on a capture of {@code origin} (any box containing {@code c.tight}, e.g. a multi-table group). */
+    static double confidence(BufferedImage img, Rectangle origin, Calibration c, int[] bright) {
+        int n = c.cx.length;
+        int gapR = (int) Math.min(3, (Math.abs(c.cx[n - 1] - c.cx[0]) / (double) (n - 1) - 2 * TableRegion.PATCH) / 2 - 1);
+        if (gapR < 0) {
+            return 1.0;
+        }
+        long sum = 0;
+        for (int i = 0; i + 1 < n; i++) {
+            int mx = (c.cx[i] + c.cx[i + 1]) / 2 - origin.x, my = (c.cy[i] + c.cy[i + 1]) / 2 - origin.y;
+            sum += DotSampler.avgBrightness(img, mx, my, gapR);
+        }
+        int bg = (int) (sum / (n - 1));
+        int min = Integer.MAX_VALUE;
+        for (int b : bright) {
+            min = Math.min(min, Math.abs(b - bg));
+        }
+        return (double) min / Math.max(1, c.minContrast);
+    }
+
+    // trung bình luma x256 của patch bán kính r quanh (x, y), cắt theo biên ảnh
+    private static int mean(long[] sat, int w, int h, int x, int y, int r) {
+        int x0 = Math.max(0, x - r), x1 = Math.min(w - 1, x + r);
+        int y0 = Math.max(0, y - r), y1 = Math.min(h - 1, y + r);
+        if (x1 < x0 || y1 < y0) {
+            return 0;
+        }
+        int s = w + 1;
+        long sum = sat[(y1 + 1) * s + x1 + 1] - sat[y0 * s + x1 + 1] - sat[(y1 + 1) * s + x0] + sat[y0 * s + x0];
+        return (int) (sum / ((long) (x1 - x0 + 1) * (y1 - y0 + 1)));
+    }
+
+    private static int median(int[] hist, int total) {
+        int seen = 0;
+        for (int v = 0; v < hist.length; v++) {
+            seen += hist[v];
+            if (seen * 2 >= total) {
+                return v;
+            }
+        }
+        return hist.length - 1;
+    }
+
+    // bình phương tối thiểu v_i = a + b*i
+    private static double[] fitLine(double[] v) {
+        int n = v.length;
+        double si = 0, sv = 0, sii = 0, siv = 0;
+        for (int i = 0; i < n; i++) {
+            si += i;
+            sv += v[i];
+            sii += (double) i * i;
+            siv += i * v[i];
+        }
+        double b = (n * siv - si * sv) / (n * sii - si * si);
+        return new double[]{(sv - b * si) / n, b};
+    }
+}
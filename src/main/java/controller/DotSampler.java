@@ -0,0 +1,203 @@
+package controller;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Brightness sampling + 2-means threshold for one row of dots.
+ *
+ * Reads the capture's int pixel array directly (Robot captures are
+ * TYPE_INT_RGB) instead of going through getRGB/ColorModel per pixel, and
+ * uses fixed-point luma: Y*256 = 77R + 150G + 29B (BT.601 weights x256).
+ * Brightness values are average luma in 1/256 units.  All buffers are
+ * allocated once, so sampling a frame allocates nothing.
+ *
+ * Not thread-safe: one sampler per scanning thread.
+ */
+final class DotSampler {
+
+    private final int numDots;
+    private final int[] bright;
+    private final int[] sorted;
+
+    DotSampler(int numDots) {
+        if (numDots < 8) {
+            throw new IllegalArgumentException("numDots >= 8");
+        }
+        this.numDots = numDots;
+        this.bright = new int[numDots];
+        this.sorted = new int[numDots];
+    }
+
+    /**
+     * Samples every dot (center {@code cx[i]}, {@code cy} in image
+     * coordinates, patch radius {@code r}) and returns the history bitmask:
+     * bit set = T = darker than the threshold, first dot in the highest bit.
+     */
+    int sample(BufferedImage img, int[] cx, int cy, int r) {
+        for (int i = 0; i < numDots; i++) {
+            bright[i] = avgBrightness(img, cx[i], cy, r);
+        }
+        int thr = kmeans2Threshold(bright);
+        int bits = 0;
+        for (int i = 0; i < numDots; i++) {
+            bits = (bits << 1) | (bright[i] < thr ? 1 : 0);
+        }
+        return bits;
+    }
+
+    /** Same as {@link #sample(BufferedImage, int[], int, int)} with a centre y per dot (calibrated rows need not be level). */
+    int sample(BufferedImage img, int[] cx, int[] cy, int r) {
+        measure(img, cx, cy, r);
+        return classify();
+    }
+
+    /**
+     * First half of {@link #sample(BufferedImage, int[], int[], int)}: the
+     * brightness of every dot, kept as {@link #lastBrightness()}.  Split so
+     * the scanners can time the pixel reads and the threshold separately.
+     */
+    void measure(BufferedImage img, int[] cx, int[] cy, int r) {
+        for (int i = 0; i < numDots; i++) {
+            bright[i] = avgBrightness(img, cx[i], cy[i], r);
+        }
+    }
+
+    /** Second half: 2-means threshold of the last {@link #measure} -> history bitmask. */
+    int classify() {
+        int thr = kmeans2Threshold(bright);
+        int bits = 0;
+        for (int i = 0; i < numDots; i++) {
+            bits = (bits << 1) | (bright[i] < thr ? 1 : 0);
+        }
+        return bits;
+    }
+
+    /**
+     * Cheap fingerprint of the dot patches: a 3x3 grid of pixels per patch
+     * (centre, edges at r/2), folded into a 64-bit hash.  A dot changes
+     * colour as a whole, so every change that can flip a bit moves these
+     * pixels; 117 reads instead of the 13 x 17 x 17 that {@link #sample}
+     * does.  Equal fingerprints on the same geometry = same bits.
+     */
+    static long fingerprint(BufferedImage img, int[] cx, int[] cy, int r) {
+        int w = img.getWidth(), h = img.getHeight(), d = Math.max(1, r / 2);
+        long hash = 0x9E3779B97F4A7C15L;
+        Raster raster = img.getRaster();
+        boolean fast = raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && isRgbLayout(img.getType());
+        int[] px = null;
+        int stride = 0, base = 0;
+        if (fast) {
+            DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+            stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            px = db.getData();
+            base = db.getOffset() - raster.getSampleModelTranslateY() * stride - raster.getSampleModelTranslateX();
+        }
+        for (int i = 0; i < cx.length; i++) {
+            for (int dy = -d; dy <= d; dy += d) {
+                int y = Math.min(h - 1, Math.max(0, cy[i] + dy));
+                for (int dx = -d; dx <= d; dx += d) {
+                    int x = Math.min(w - 1, Math.max(0, cx[i] + dx));
+                    int rgb = fast ? px[base + y * stride + x] : img.getRGB(x, y);
+                    hash = (hash ^ (rgb & 0xFFFFFF)) * 0x100000001B3L;
+                }
+            }
+        }
+        return hash ^ (hash >>> 29);
+    }
+
+    /** Brightness values of the last {@link #sample} call (average luma x256). */
+    int[] lastBrightness() {
+        return bright;
+    }
+
+    /** Average luma x256 over the (clipped) square patch of radius r around (cx, cy). */
+    static int avgBrightness(BufferedImage img, int cx, int cy, int r) {
+        int x0 = Math.max(0, cx - r), x1 = Math.min(img.getWidth() - 1, cx + r);
+        int y0 = Math.max(0, cy - r), y1 = Math.min(img.getHeight() - 1, cy + r);
+        if (x1 < x0 || y1 < y0) {
+            return 0;
+        }
+        long sum = 0;
+        Raster raster = img.getRaster();
+        if (raster.getDataBuffer() instanceof DataBufferInt db
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm
+                && isRgbLayout(img.getType())) {
+            int[] px = db.getData();
+            int stride = sm.getScanlineStride();
+            int base = db.getOffset()
+                    - raster.getSampleModelTranslateY() * stride
+                    - raster.getSampleModelTranslateX();
+            for (int y = y0; y <= y1; y++) {
+                int row = base + y * stride;
+                for (int x = x0; x <= x1; x++) {
+                    sum += luma256(px[row + x]);
+                }
+            }
+        } else {
+            // ảnh không phải int RGB (hiếm) -> đường chậm qua ColorModel
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    sum += luma256(img.getRGB(x, y));
+                }
+            }
+        }
+        int cnt = (x1 - x0 + 1) * (y1 - y0 + 1);
+        return (int) (sum / cnt);
+    }
+
+    static int luma256(int rgb) {
+        return 77 * ((rgb >> 16) & 255) + 150 * ((rgb >> 8) & 255) + 29 * (rgb & 255);
+    }
+
+    /**
+     * Threshold between the two clusters of {@code v} (1-D 2-means, seeded
+     * from the 4th smallest and 4th largest value).  Uses the sampler's
+     * scratch buffer, so the input is left untouched.
+     */
+    int kmeans2Threshold(int[] v) {
+        int n = v.length;
+        int[] a = sorted;
+        // insertion sort: n = 13, cheaper than Arrays.sort and no copy
+        for (int i = 0; i < n; i++) {
+            int x = v[i], j = i - 1;
+            while (j >= 0 && a[j] > x) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = x;
+        }
+        long m1 = a[3], m2 = a[n - 4];
+        for (int it = 0; it < 10; it++) {
+            long s1 = 0, c1 = 0, s2 = 0, c2 = 0;
+            for (int i = 0; i < n; i++) {
+                int x = v[i];
+                if (Math.abs(x - m1) <= Math.abs(x - m2)) {
+                    s1 += x;
+                    c1++;
+                } else {
+                    s2 += x;
+                    c2++;
+                }
+            }
+            long n1 = c1 > 0 ? s1 / c1 : m1, n2 = c2 > 0 ? s2 / c2 : m2;
+            boolean converged = (n1 == m1 && n2 == m2);
+            m1 = n1;
+            m2 = n2;
+            if (converged) {
+                break;
+            }
+        }
+        return (int) ((m1 + m2) / 2);
+    }
+
+    private static boolean isRgbLayout(int type) {
+        return type == BufferedImage.TYPE_INT_RGB
+                || type == BufferedImage.TYPE_INT_ARGB
+                || type == BufferedImage.TYPE_INT_ARGB_PRE;
+    }
+}
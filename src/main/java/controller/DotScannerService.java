@@ -3,116 +3,189 @@ package controller;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.util.Arrays;
-import model.LLM;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import model.History;
 
 public class DotScannerService {
-    private final int NUM_DOTS = 13;
-    private final int PATCH = 8;
-    private final int MARGIN_X = 20, MARGIN_Y = 20;
-    private final int PERIOD_MS = 5000;
+    private final int NUM_DOTS = TableRegion.NUM_DOTS;
+    private final int PATCH = TableRegion.PATCH;
+    private final long periodMs;
 
     private Point pFirst, pLast;
+    private final FrameSource source;
+    private Thread worker;
     private volatile boolean running = false;
-    private volatile String lastHistory = null;
+    private volatile History lastHistory = null;
+    // ghi: thread scanner, đọc: thread bất kỳ; đếm cả khi Metrics tắt
+    private volatile long frameSkips, frameMisses;
+    private final List<HistoryListener> listeners = new CopyOnWriteArrayList<>();
 
     private double scale = 1.0;
 
 //    public 
     
     public DotScannerService(Point first, Point last, double scale) {
+        this(first, last, scale, 5000);
+    }
+
+    public DotScannerService(Point first, Point last, double scale, long periodMs) {
+        this(first, last, scale, periodMs, null);
+    }
+
+    /** {@code source} null = màn hình thật ({@link RobotFrameSource}, tạo trên thread scanner). */
+    public DotScannerService(Point first, Point last, double scale, long periodMs, FrameSource source) {
         this.pFirst = first;
         this.pLast = last;
         this.scale = scale;
+        this.periodMs = periodMs;
+        this.source = source;
+    }
+
+    /** Listener được gọi (trên thread scanner, theo đúng thứ tự) mỗi khi lịch sử đọc được đổi. */
+    public void addListener(HistoryListener l) {
+        listeners.add(l);
+    }
+
+    public void removeListener(HistoryListener l) {
+        listeners.remove(l);
     }
 
     public void start() {
         if (running) return;
         running = true;
-        new Thread(this::loop).start();
+        worker = new Thread(this::loop, "dot-scanner");
+        worker.start();
     }
 
     public void stop() {
         running = false;
     }
 
-    public String getLastHistory() {
+    /** Chờ thread scanner thoát sau {@link #stop()}. */
+    public void join(long millis) throws InterruptedException {
+        Thread t = worker;
+        if (t != null) t.join(millis);
+    }
+
+    public History getLastHistory() {
         return lastHistory;
     }
 
     public char getLatestResult() {
-        if (lastHistory == null || lastHistory.length() < NUM_DOTS) return '?';
-        return lastHistory.charAt(NUM_DOTS - 1);
+        History h = lastHistory;
+        if (h == null || h.length() < NUM_DOTS) return '?';
+        return h.lastIsT() ? 'T' : 'X';
+    }
+
+    /** Frames skipped because their fingerprint matched the previous frame (nothing sampled). */
+    public long getFrameSkips() {
+        return frameSkips;
+    }
+
+    /** Frames whose fingerprint changed and were sampled and thresholded. */
+    public long getFrameMisses() {
+        return frameMisses;
     }
 
     // ==================== nội bộ ======================
     private void loop() {
-        try {
-            Robot robot = new Robot();
+        try (FrameSource frames = (source != null) ? source : new RobotFrameSource()) {
+            DotSampler sampler = new DotSampler(NUM_DOTS);
+
+            // Hình học danh nghĩa: dùng khi chưa hiệu chỉnh được
+            TableRegion region = new TableRegion("main", pFirst, pLast);
+            Rectangle roi = region.roi();
+            int[] nomCx = region.centersX(roi);
+            int[] nomCy = new int[NUM_DOTS];
+            Arrays.fill(nomCy, region.centerY(roi));
+
+            // Đã hiệu chỉnh -> chỉ chụp hộp sát 13 chấm; chưa -> chụp cả ROI
+            CalibrationTracker calib = new CalibrationTracker(region.name());
+            Rectangle capture = roi;
+            int[] cx = nomCx, cy = nomCy;
+            long lastFp = 0;
+            long frame = 0;
+
             while (running) {
                 long t0 = System.currentTimeMillis();
+                long n0 = Metrics.ENABLED ? System.nanoTime() : 0L;
+
+                if (calib.due(frame)) {
+                    BufferedImage full = frames.capture(roi);
+                    if (calib.offer(DotCalibrator.calibrate(full, roi, region), frame)) {
+                        DotCalibrator.Calibration c = calib.get();
+                        lastFp = 0;
+                        capture = c.tight;
+                        cx = c.cxIn(capture);
+                        cy = c.cyIn(capture);
+                    }
+                    n0 = Metrics.ENABLED ? System.nanoTime() : 0L;
+                }
+                frame++;
 
-                double dx = (pLast.x - pFirst.x) / (double)(NUM_DOTS - 1);
-                int minX = (int)Math.floor(Math.min(pFirst.x, pLast.x) - MARGIN_X - PATCH);
-                int maxX = (int)Math.ceil (Math.max(pFirst.x, pLast.x) + MARGIN_X + PATCH);
-                int cY   = pFirst.y;
-                int minY = cY - (MARGIN_Y + PATCH);
-                int maxY = cY + (MARGIN_Y + PATCH);
-
-                Rectangle roi = new Rectangle(minX, minY,
-                        Math.max(10, maxX - minX + 1),
-                        Math.max(10, maxY - minY + 1));
+                BufferedImage img = frames.capture(capture);
+                long n1 = Metrics.ENABLED ? System.nanoTime() : 0L;
+                if (Metrics.ENABLED) {
+                    Metrics.CAPTURE.record(n1 - n0);
+                    Metrics.FRAMES.increment();
+                }
 
-                BufferedImage img = robot.createScreenCapture(roi);
+                // giữa ván hầu hết frame y hệt frame trước: cùng fingerprint -> cùng bits, bỏ qua sample/threshold
+                long fp = DotSampler.fingerprint(img, cx, cy, PATCH);
+                if (fp == lastFp && lastHistory != null && !calib.lowConfidence()) {
+                    frameSkips++;
+                    if (Metrics.ENABLED) {
+                        Metrics.FRAME_SKIPS.increment();
+                        Metrics.SCAN.since(n0);
+                    }
+                    pause(t0);
+                    continue;
+                }
+                lastFp = fp;
+                frameMisses++;
+                sampler.measure(img, cx, cy, PATCH);
+                long n2 = Metrics.ENABLED ? System.nanoTime() : 0L;
+                int bits = sampler.classify();
+                if (Metrics.ENABLED) {
+                    Metrics.SAMPLE.record(n2 - n1);
+                    Metrics.THRESHOLD.since(n2);
+                    Metrics.FRAME_MISSES.increment();
+                }
 
-                double[] bright = new double[NUM_DOTS];
-                for (int i = 0; i < NUM_DOTS; i++) {
-                    int cx = (int)Math.round(pFirst.x + i * dx) - roi.x;
-                    int cy = cY - roi.y;
-                    bright[i] = avgBrightness(img, cx, cy, PATCH);
+                // chấm nhạt dần so với lúc hiệu chỉnh (bàn dịch, đổi skin...) -> về ROI đầy đủ và hiệu chỉnh lại
+                if (calib.get() != null
+                        && calib.check(DotCalibrator.confidence(img, calib.get(), sampler.lastBrightness()), frame)) {
+                    lastFp = 0;
+                    capture = roi;
+                    cx = nomCx;
+                    cy = nomCy;
+                    continue;
                 }
 
-                double thr = kmeans2Threshold(bright);
-                StringBuilder sb = new StringBuilder(NUM_DOTS);
-                for (double v : bright) sb.append(v < thr ? 'T' : 'X');
-                lastHistory = sb.toString();
+                // chỉ tạo History mới + báo listener khi lịch sử thật sự đổi
+                History prev = lastHistory;
+                if (prev == null || prev.bits() != bits) {
+                    long n3 = Metrics.ENABLED ? System.nanoTime() : 0L;
+                    History h = History.of(bits, NUM_DOTS);
+                    lastHistory = h;
+                    for (HistoryListener l : listeners) l.onHistory(h, t0);
+                    if (Metrics.ENABLED) {
+                        Metrics.PUBLISH.since(n3);
+                        Metrics.HISTORY_CHANGES.increment();
+                    }
+                }
+                if (Metrics.ENABLED) Metrics.SCAN.since(n0);
 
-                long spent = System.currentTimeMillis() - t0;
-                long sleep = PERIOD_MS - spent;
-                if (sleep > 0) Thread.sleep(sleep);
+                pause(t0);
             }
         } catch (Exception ex) {
             ex.printStackTrace();
         }
     }
 
-    private double avgBrightness(BufferedImage img, int cx, int cy, int r) {
-        int x0 = Math.max(0, cx - r), x1 = Math.min(img.getWidth()-1,  cx + r);
-        int y0 = Math.max(0, cy - r), y1 = Math.min(img.getHeight()-1, cy + r);
-        long sum=0, cnt=0;
-        for (int y=y0; y<=y1; y++)
-            for (int x=x0; x<=x1; x++) {
-                int rgb = img.getRGB(x,y);
-                int R=(rgb>>16)&255, G=(rgb>>8)&255, B=rgb&255;
-                int lum = (int)Math.round(0.299*R + 0.587*G + 0.114*B);
-                sum += lum; cnt++;
-            }
-        return (double)sum/Math.max(1,cnt);
-    }
-
-    private double kmeans2Threshold(double[] v){
-        double[] a = Arrays.copyOf(v, v.length);
-        Arrays.sort(a);
-        double m1=a[3], m2=a[a.length-4];
-        for(int it=0; it<10; it++){
-            double s1=0,c1=0,s2=0,c2=0;
-            for(double x: v){
-                if (Math.abs(x-m1)<=Math.abs(x-m2)) { s1+=x; c1++; }
-                else { s2+=x; c2++; }
-            }
-            double n1=c1>0?s1/c1:m1, n2=c2>0?s2/c2:m2;
-            if (Math.abs(n1-m1)+Math.abs(n2-m2)<0.01){ m1=n1; m2=n2; break; }
-            m1=n1; m2=n2;
-        }
-        return (m1+m2)/2.0;
+    private void pause(long t0) throws InterruptedException {
+        long sleep = periodMs - (System.currentTimeMillis() - t0);
+        if (sleep > 0) Thread.sleep(sleep);
     }
 }
@@ -0,0 +1,465 @@
+package controller;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Session log that never formats on the round loop.
+ *
+ * The loop thread only claims a slot in a fixed ring and stores primitive
+ * fields (plus references to strings it already has: table name, constant
+ * messages).  A daemon writer thread drains the ring in batches and renders
+ * every event twice: a console line (same text as the old printf lines,
+ * optional) and a JSON line appended to a size-rotated file (optional).
+ * Neither a slow terminal nor the disk can block the loop: when the ring is
+ * full the event is dropped and counted, and the writer reports the count.
+ *
+ * Several tables log from different threads: slots are claimed by CAS on
+ * the head sequence and published per slot, the writer consumes in order.
+ *
+ * System properties:
+ * <pre>
+ *   sicbo.log.console   console lines (default true)
+ *   sicbo.log.file      JSON-lines file, rotated to file.1 .. file.N (default off)
+ *   sicbo.log.maxMB     rotate when the file would exceed this (default 64)
+ *   sicbo.log.keep      rotated files kept (default 5)
+ *   sicbo.log.ring      ring slots, rounded up to a power of two (default 8192)
+ * </pre>
+ */
+public final class EventLog {
+
+    // ===== LOẠI SỰ KIỆN =====
+    private static final byte MSG = 0, NEW_SESS = 1, ROUND = 2, FALLBACK = 3;
+    // ===== MỨC (MSG) =====
+    public static final int INFO = 0, WARN = 1, ERR = 2, HB = 3, DBG = 4, STOP = 5;
+    private static final String[] LEVEL_TAG = {"[INFO]", "[WARN]", "[ERR ]", "[HB  ]", "[DBG ]", "[STOP]"};
+    private static final String[] LEVEL_NAME = {"info", "warn", "err", "hb", "dbg", "stop"};
+    private static final String[] PRED = {"TAI", "XIU", "SKIP"};
+    private static final String[] ACTUAL = {"T", "X"};
+    private static final String[] SOURCE = {"model", "retry", "heuristic", "table"};
+
+    private static final int INTS = 8, DOUBLES = 12;
+    private static final int ROLL_WINDOWS = 3;
+
+    static final boolean CONSOLE = !"false".equalsIgnoreCase(System.getProperty("sicbo.log.console"));
+    private static final String FILE = System.getProperty("sicbo.log.file");
+    private static final long MAX_BYTES = Long.getLong("sicbo.log.maxMB", 64) << 20;
+    private static final int KEEP = Integer.getInteger("sicbo.log.keep", 5);
+    /** false = không console, không file: mọi lệnh ghi trả về ngay. */
+    public static final boolean ENABLED = CONSOLE || FILE != null;
+
+    // ===== RING (SoA, cấp phát 1 lần) =====
+    private static final int CAP = Integer.highestOneBit(Math.max(64, Integer.getInteger("sicbo.log.ring", 8192) * 2 - 1));
+    private static final int MASK = CAP - 1;
+    private static final AtomicLongArray published = new AtomicLongArray(CAP);
+    private static final byte[] type = new byte[CAP];
+    private static final long[] atMs = new long[CAP];
+    private static final String[] table = new String[CAP];
+    private static final String[] text = new String[CAP];
+    private static final int[] ints = new int[CAP * INTS];
+    private static final double[] dbls = new double[CAP * DOUBLES];
+    private static final AtomicLong head = new AtomicLong(), tail = new AtomicLong(), dropped = new AtomicLong();
+
+    private static final Thread writer;
+
+    static {
+        for (int i = 0; i < CAP; i++) {
+            published.set(i, -1L);
+        }
+        writer = new Thread(new Writer(), "event-log");
+        writer.setDaemon(true);
+        if (ENABLED) {
+            writer.start();
+        }
+    }
+
+    private EventLog() {
+    }
+
+    // ===== GHI (thread vòng lặp) =====
+
+    /** {@code table} null = 1 bàn; {@code text} nên là hằng hoặc chuỗi đã có sẵn. */
+    public static void msg(int level, String table, String text) {
+        long seq = claim();
+        if (seq < 0) return;
+        int s = (int) seq & MASK;
+        type[s] = MSG;
+        fill(s, table, text);
+        ints[s * INTS] = level;
+        published.lazySet(s, seq);
+    }
+
+    public static void newSession(String table, int bits, int length, int pred, double nextStake) {
+        long seq = claim();
+        if (seq < 0) return;
+        int s = (int) seq & MASK;
+        type[s] = NEW_SESS;
+        fill(s, table, null);
+        int i = s * INTS;
+        ints[i] = bits;
+        ints[i + 1] = length;
+        ints[i + 2] = pred;
+        dbls[s * DOUBLES] = nextStake;
+        published.lazySet(s, seq);
+    }
+
+    /** Một ván đã settle; pred = 0/1/2 (TAI/XIU/SKIP), actual = 0/1 (T/X), source = RoundJournal.SOURCE_*. */
+    public static void round(String table, int round, int pred, int actual, int source,
+                             double accuracy, double pnl, double nextStake, RollingStats rolling) {
+        long seq = claim();
+        if (seq < 0) return;
+        int s = (int) seq & MASK;
+        type[s] = ROUND;
+        fill(s, table, null);
+        int i = s * INTS, d = s * DOUBLES;
+        ints[i] = round;
+        ints[i + 1] = pred;
+        ints[i + 2] = actual;
+        ints[i + 3] = source;
+        ints[i + 4] = rolling.currentStreak();
+        dbls[d] = accuracy;
+        dbls[d + 1] = pnl;
+        dbls[d + 2] = nextStake;
+        dbls[d + 3] = rolling.drawdown();
+        dbls[d + 4] = rolling.maxDrawdown();
+        int k = 0;
+        for (; k < ROLL_WINDOWS && k < rolling.windowCount(); k++) {
+            ints[i + 5 + k] = rolling.window(k);
+            dbls[d + 5 + 2 * k] = rolling.accuracy(k);
+            dbls[d + 6 + 2 * k] = rolling.pnl(k);
+        }
+        for (; k < ROLL_WINDOWS; k++) {
+            ints[i + 5 + k] = 0;
+        }
+        published.lazySet(s, seq);
+    }
+
+    public static void fallback(String table, int pred) {
+        long seq = claim();
+        if (seq < 0) return;
+        int s = (int) seq & MASK;
+        type[s] = FALLBACK;
+        fill(s, table, null);
+        ints[s * INTS] = pred;
+        published.lazySet(s, seq);
+    }
+
+    /**
+     * Chờ writer ghi xong mọi sự kiện đã gửi (tối đa {@code timeoutMs}),
+     * vd. trước khi in summary thẳng ra stdout.
+     */
+    public static void flush(long timeoutMs) {
+        if (!ENABLED) return;
+        long target = head.get(), deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        while (tail.get() < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(200_000L);
+        }
+    }
+
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    private static long claim() {
+        if (!ENABLED) return -1;
+        while (true) {
+            long h = head.get();
+            if (h - tail.get() >= CAP) {
+                dropped.incrementAndGet();
+                return -1;
+            }
+            if (head.compareAndSet(h, h + 1)) {
+                return h;
+            }
+        }
+    }
+
+    private static void fill(int s, String tbl, String txt) {
+        atMs[s] = System.currentTimeMillis();
+        table[s] = tbl;
+        text[s] = txt;
+    }
+
+    // ===== WRITER THREAD =====
+    private static final class Writer implements Runnable {
+        private static final int BATCH = 512;
+        private final DateTimeFormatter tsFmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+        private final StringBuilder out = new StringBuilder(1 << 14), err = new StringBuilder(1 << 10);
+        private final StringBuilder json = new StringBuilder(1 << 16);
+        private final char[] hist = new char[32];
+        private long tsSecond = Long.MIN_VALUE;
+        private String tsText = "";
+        private long reportedDrops;
+        private FileChannel file;
+        private long fileBytes;
+
+        @Override
+        public void run() {
+            openFile();
+            while (true) {
+                long t = tail.get();
+                int n = 0;
+                while (n < BATCH) {
+                    int s = (int) (t + n) & MASK;
+                    if (published.get(s) != t + n) break;
+                    render(s);
+                    table[s] = null;
+                    text[s] = null;
+                    n++;
+                }
+                if (n > 0) {
+                    long drops = dropped.get();
+                    if (drops != reportedDrops) {
+                        out.append("[WARN] event log full, dropped ").append(drops - reportedDrops).append(" events\n");
+                        reportedDrops = drops;
+                    }
+                    emit();
+                    tail.lazySet(t + n);
+                } else {
+                    LockSupport.parkNanos(2_000_000L);
+                }
+            }
+        }
+
+        private void render(int s) {
+            int i = s * INTS, d = s * DOUBLES;
+            String tbl = table[s];
+            long ms = atMs[s];
+            json.append("{\"ts\":").append(ms);
+            if (tbl != null) {
+                json.append(",\"table\":");
+                quote(tbl);
+            }
+            switch (type[s]) {
+                case MSG -> {
+                    int level = ints[i];
+                    StringBuilder sb = (level == ERR) ? err : out;
+                    if (CONSOLE) {
+                        sb.append(LEVEL_TAG[level]);
+                        if (tbl != null) sb.append(' ').append(tbl);
+                        sb.append(' ').append(text[s]).append('\n');
+                    }
+                    json.append(",\"ev\":\"").append(LEVEL_NAME[level]).append("\",\"msg\":");
+                    quote(text[s] == null ? "" : text[s]);
+                }
+                case NEW_SESS -> {
+                    String h = history(ints[i], ints[i + 1]);
+                    if (CONSOLE) {
+                        out.append('[').append(ts(ms)).append(']');
+                        if (tbl != null) out.append(' ').append(tbl);
+                        out.append(" NEW SESS | hist=").append(h).append(" | pred_next=").append(PRED[ints[i + 2]])
+                                .append(" | nextStake=");
+                        fixed(out, dbls[d], 2);
+                        out.append('\n');
+                    }
+                    json.append(",\"ev\":\"newSession\",\"hist\":\"").append(h).append("\",\"pred\":\"")
+                            .append(PRED[ints[i + 2]]).append("\",\"nextStake\":").append(dbls[d]);
+                }
+                case ROUND -> renderRound(s, tbl, ms);
+                case FALLBACK -> {
+                    if (CONSOLE) {
+                        out.append("[DBG ]");
+                        if (tbl != null) out.append(' ').append(tbl);
+                        out.append(" heuristic fallback -> ").append(PRED[ints[i]]).append('\n');
+                    }
+                    json.append(",\"ev\":\"fallback\",\"pred\":\"").append(PRED[ints[i]]).append('"');
+                }
+                default -> json.append(",\"ev\":\"unknown\"");
+            }
+            json.append("}\n");
+        }
+
+        private void renderRound(int s, String tbl, long ms) {
+            int i = s * INTS, d = s * DOUBLES;
+            int pred = ints[i + 1], actual = ints[i + 2], streak = ints[i + 4];
+            boolean win = (pred == 0 && actual == 0) || (pred == 1 && actual == 1);
+            String result = (pred == 2) ? "SKIP" : (win ? "WIN" : "LOSE");
+            if (CONSOLE) {
+                out.append('[').append(ts(ms)).append(']');
+                if (tbl != null) out.append(' ').append(tbl);
+                out.append(" Round=").append(ints[i]).append(" | pred=").append(PRED[pred])
+                        .append(" actual=").append(ACTUAL[actual]).append(" result=").append(result).append(" | acc=");
+                fixed(out, dbls[d] * 100.0, 2);
+                out.append("% | pnl=");
+                fixed(out, dbls[d + 1], 2);
+                out.append(" | nextStake=");
+                fixed(out, dbls[d + 2], 2);
+                out.append("\n[ROLL]");
+                if (tbl != null) out.append(' ').append(tbl);
+                out.append(' ');
+                int span = 0;
+                for (int k = 0; k < ROLL_WINDOWS && ints[i + 5 + k] > 0; k++) {
+                    int w = ints[i + 5 + k];
+                    span = Math.max(span, w);
+                    out.append("acc").append(w).append('=');
+                    fixed(out, dbls[d + 5 + 2 * k] * 100.0, 1);
+                    out.append("% pnl").append(w).append('=');
+                    double p = dbls[d + 6 + 2 * k];
+                    if (p >= 0) out.append('+');
+                    fixed(out, p, 2);
+                    out.append(' ');
+                }
+                out.append("dd=");
+                fixed(out, dbls[d + 3], 2);
+                out.append(" mdd").append(span).append('=');
+                fixed(out, dbls[d + 4], 2);
+                out.append(" streak=").append(streak >= 0 ? 'W' : 'L').append(Math.abs(streak)).append('\n');
+            }
+            json.append(",\"ev\":\"round\",\"round\":").append(ints[i])
+                    .append(",\"pred\":\"").append(PRED[pred]).append("\",\"actual\":\"").append(ACTUAL[actual])
+                    .append("\",\"result\":\"").append(result).append("\",\"source\":\"").append(SOURCE[ints[i + 3]])
+                    .append("\",\"acc\":").append(dbls[d]).append(",\"pnl\":").append(dbls[d + 1])
+                    .append(",\"nextStake\":").append(dbls[d + 2]).append(",\"dd\":").append(dbls[d + 3])
+                    .append(",\"mdd\":").append(dbls[d + 4]).append(",\"streak\":").append(streak);
+            for (int k = 0; k < ROLL_WINDOWS && ints[i + 5 + k] > 0; k++) {
+                int w = ints[i + 5 + k];
+                json.append(",\"acc").append(w).append("\":").append(dbls[d + 5 + 2 * k])
+                        .append(",\"pnl").append(w).append("\":").append(dbls[d + 6 + 2 * k]);
+            }
+        }
+
+        private void emit() {
+            if (out.length() > 0) {
+                print(System.out, out);
+            }
+            if (err.length() > 0) {
+                print(System.err, err);
+            }
+            if (file != null && json.length() > 0) {
+                byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+                try {
+                    if (fileBytes > 0 && fileBytes + bytes.length > MAX_BYTES) {
+                        rotate();
+                    }
+                    ByteBuffer buf = ByteBuffer.wrap(bytes);
+                    while (buf.hasRemaining()) {
+                        fileBytes += file.write(buf);
+                    }
+                } catch (IOException e) {
+                    System.err.println("[ERR ] event log file failed, file logging off: " + e.getMessage());
+                    closeFile();
+                }
+            }
+            json.setLength(0);
+        }
+
+        private static void print(PrintStream ps, StringBuilder sb) {
+            ps.print(sb);
+            ps.flush();
+            sb.setLength(0);
+        }
+
+        private void openFile() {
+            if (FILE == null) return;
+            try {
+                file = FileChannel.open(Path.of(FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+                fileBytes = file.size();
+            } catch (IOException e) {
+                System.err.println("[ERR ] cannot open event log " + FILE + ": " + e.getMessage());
+                file = null;
+            }
+        }
+
+        // file -> file.1 -> ... -> file.KEEP (bản cũ nhất bị ghi đè)
+        private void rotate() throws IOException {
+            closeFile();
+            Path p = Path.of(FILE);
+            for (int k = KEEP - 1; k >= 1; k--) {
+                Path from = Path.of(FILE + "." + k);
+                if (Files.exists(from)) {
+                    Files.move(from, Path.of(FILE + "." + (k + 1)), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            if (KEEP > 0) {
+                Files.move(p, Path.of(FILE + ".1"), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(p);
+            }
+            openFile();
+            if (file == null) {
+                throw new IOException("reopen failed");
+            }
+        }
+
+        private void closeFile() {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                    // đang đóng vì lỗi, không làm gì thêm
+                }
+                file = null;
+            }
+        }
+
+        private String ts(long ms) {
+            long sec = Math.floorDiv(ms, 1000);
+            if (sec != tsSecond) {
+                tsSecond = sec;
+                tsText = tsFmt.format(Instant.ofEpochMilli(ms));
+            }
+            return tsText;
+        }
+
+        // giống History.toString(): chấm đầu = bit cao, T = 1
+        private String history(int bits, int length) {
+            int n = Math.min(length, hist.length);
+            for (int k = 0; k < n; k++) {
+                hist[k] = ((bits >>> (n - 1 - k)) & 1) != 0 ? 'T' : 'X';
+            }
+            return new String(hist, 0, n);
+        }
+
+        private void quote(String s) {
+            json.append('"');
+            for (int k = 0; k < s.length(); k++) {
+                char c = s.charAt(k);
+                switch (c) {
+                    case '"' -> json.append("\\\"");
+                    case '\\' -> json.append("\\\\");
+                    case '\n' -> json.append("\\n");
+                    case '\r' -> json.append("\\r");
+                    case '\t' -> json.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                    }
+                }
+            }
+            json.append('"');
+        }
+
+        // như %.{digits}f (làm tròn half-up), không qua Formatter
+        private static void fixed(StringBuilder sb, double v, int digits) {
+            if (Double.isNaN(v) || Double.isInfinite(v) || Math.abs(v) >= 1e15) {
+                sb.append(String.format("%." + digits + "f", v));
+                return;
+            }
+            long scale = digits == 1 ? 10 : 100;
+            long r = Math.round(Math.abs(v) * scale);
+            if (v < 0 && r != 0) sb.append('-');
+            sb.append(r / scale).append('.');
+            long frac = r % scale;
+            if (digits == 2 && frac < 10) sb.append('0');
+            sb.append(frac);
+        }
+    }
+}
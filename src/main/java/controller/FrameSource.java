@@ -0,0 +1,24 @@
+package controller;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Where the scanners get their pixels: the live screen
+ * ({@link RobotFrameSource}), a recorded frame file
+ * ({@link RecordedFrameSource}) or a synthetic renderer
+ * ({@link SyntheticFrameSource}).
+ *
+ * {@link #capture} returns an image of exactly {@code r} (screen
+ * coordinates).  The image may share pixels with the source and is only
+ * valid until the next capture.  Not thread-safe: one source per scanning
+ * thread.
+ */
+public interface FrameSource extends AutoCloseable {
+
+    BufferedImage capture(Rectangle r);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,13 @@
+package controller;
+
+import model.History;
+
+/**
+ * Nhận mọi thay đổi lịch sử mà {@link DotScannerService} đọc được, theo đúng
+ * thứ tự, trên thread của scanner.  {@code atMs} là lúc chụp frame
+ * (System.currentTimeMillis).  Không được block: chỉ chuyển tiếp rồi trả về.
+ */
+@FunctionalInterface
+public interface HistoryListener {
+    void onHistory(History history, long atMs);
+}
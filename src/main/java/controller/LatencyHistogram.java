@@ -0,0 +1,112 @@
+package controller;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with fixed power-of-two buckets over
+ * nanoseconds: bucket i holds samples in [2^(i-1), 2^i) ns, bucket 0 holds
+ * 0 ns, the last bucket everything from ~34 s up.  Recording is one
+ * {@code numberOfLeadingZeros}, one atomic increment and two adders; no
+ * allocation, no locks.  Percentiles are reported as the bucket's upper
+ * bound, i.e. within a factor of 2.
+ */
+public final class LatencyHistogram {
+
+    static final int BUCKETS = 37;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNs = new LongAdder();
+    private final AtomicLong maxNs = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long ns) {
+        if (ns < 0) {
+            ns = 0;
+        }
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(ns)));
+        count.increment();
+        sumNs.add(ns);
+        if (ns > maxNs.get()) {
+            maxNs.accumulateAndGet(ns, Math::max);
+        }
+    }
+
+    /** Records {@code System.nanoTime() - startNs}. */
+    public void since(long startNs) {
+        record(System.nanoTime() - startNs);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMaxNs() {
+        return maxNs.get();
+    }
+
+    public double getMeanNs() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) sumNs.sum() / n;
+    }
+
+    /** Upper bound (ns) of the bucket holding quantile {@code q}; 0 when empty. */
+    public long percentileNs(double q) {
+        long[] snap = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snap[i] = buckets.get(i);
+            total += snap[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snap[i];
+            if (seen >= rank && snap[i] > 0) {
+                return Math.min(i == 0 ? 0 : 1L << i, maxNs.get());
+            }
+        }
+        return maxNs.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sumNs.reset();
+        maxNs.set(0);
+    }
+
+    /** "capture n=1200 p50=8.2ms p99=16.4ms max=21.0ms" */
+    String compact() {
+        return String.format("%s n=%d p50=%s p99=%s max=%s", name, getCount(),
+                fmt(percentileNs(0.50)), fmt(percentileNs(0.99)), fmt(getMaxNs()));
+    }
+
+    static String fmt(long ns) {
+        if (ns < 1_000) {
+            return ns + "ns";
+        }
+        if (ns < 1_000_000) {
+            return String.format("%.1fus", ns / 1e3);
+        }
+        if (ns < 1_000_000_000) {
+            return String.format("%.1fms", ns / 1e6);
+        }
+        return String.format("%.2fs", ns / 1e9);
+    }
+}
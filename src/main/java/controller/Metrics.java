@@ -0,0 +1,191 @@
+package controller;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the capture -> predict -> settle
+ * pipeline.  Off unless started with {@code -Dsicbo.metrics=true}.
+ *
+ * Call sites guard with {@code if (Metrics.ENABLED)}; the flag is a static
+ * final read once at class init, so with metrics off the JIT drops the
+ * guarded code, including the {@code System.nanoTime()} calls.
+ *
+ * When enabled, {@link #start()} registers the {@link MetricsMXBean} and,
+ * if {@code -Dsicbo.metrics.dumpSec=N} (default 60, 0 = never) prints a
+ * compact dump every N seconds.
+ */
+public final class Metrics implements MetricsMXBean {
+
+    public static final boolean ENABLED = Boolean.getBoolean("sicbo.metrics");
+    static final String OBJECT_NAME = "sicbo:type=Metrics";
+
+    // ===== LATENCY THEO TỪNG BƯỚC =====
+    /** robot.createScreenCapture(roi) */
+    public static final LatencyHistogram CAPTURE = new LatencyHistogram("capture");
+    /** độ sáng trung bình từng chấm (đọc pixel) */
+    public static final LatencyHistogram SAMPLE = new LatencyHistogram("sample");
+    /** 2-means threshold -> bits */
+    public static final LatencyHistogram THRESHOLD = new LatencyHistogram("threshold");
+    /** gọi listener khi lịch sử đổi */
+    public static final LatencyHistogram PUBLISH = new LatencyHistogram("publish");
+    /** 1 vòng quét, không tính sleep */
+    public static final LatencyHistogram SCAN = new LatencyHistogram("scan");
+    /** scanner thấy lịch sử mới -> Statistic xác nhận (gồm stability window) */
+    public static final LatencyHistogram CONFIRM = new LatencyHistogram("confirm");
+    /** mỗi lần safeCallLLM chờ kết quả (tối đa 12s) */
+    public static final LatencyHistogram PREDICT_WAIT = new LatencyHistogram("predictWait");
+    /** callLLMForPick tổng: bảng/LLM + retry + fallback */
+    public static final LatencyHistogram PREDICT = new LatencyHistogram("predict");
+    /** settleAndReport */
+    public static final LatencyHistogram SETTLE = new LatencyHistogram("settle");
+
+    // ===== BỘ ĐẾM =====
+    public static final LongAdder FRAMES = new LongAdder();
+    /** frame có fingerprint trùng frame trước -> bỏ qua sample / phải sample */
+    public static final LongAdder FRAME_SKIPS = new LongAdder();
+    public static final LongAdder FRAME_MISSES = new LongAdder();
+    public static final LongAdder HISTORY_CHANGES = new LongAdder();
+    public static final LongAdder ROUNDS_CONFIRMED = new LongAdder();
+    public static final LongAdder PREDICT_TIMEOUTS = new LongAdder();
+    public static final LongAdder RETRIES = new LongAdder();
+    public static final LongAdder FALLBACKS = new LongAdder();
+    /** lịch sử xác nhận khớp 1 nhánh đã đoán trước / không khớp */
+    public static final LongAdder SPEC_HITS = new LongAdder();
+    public static final LongAdder SPEC_MISSES = new LongAdder();
+    /** hiệu chỉnh lại hình học chấm (lúc đầu + khi độ tin cậy tụt) */
+    public static final LongAdder RECALIBRATIONS = new LongAdder();
+    /** lần hiệu chỉnh thất bại (quét tiếp bằng hình học danh nghĩa) */
+    public static final LongAdder CALIBRATION_FAILURES = new LongAdder();
+
+    private static final LatencyHistogram[] HISTOGRAMS = {
+        CAPTURE, SAMPLE, THRESHOLD, PUBLISH, SCAN, CONFIRM, PREDICT_WAIT, PREDICT, SETTLE
+    };
+
+    private static final Metrics INSTANCE = new Metrics();
+    private static boolean started;
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    /** Registers the MXBean and the periodic dump; no-op when disabled or already started. */
+    public static synchronized void start() {
+        if (!ENABLED || started) {
+            return;
+        }
+        started = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            System.err.println("[WARN] metrics MXBean not registered: " + e.getMessage());
+        }
+        long dumpSec = Long.getLong("sicbo.metrics.dumpSec", 60);
+        if (dumpSec > 0) {
+            dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics-dump");
+                t.setDaemon(true);
+                return t;
+            });
+            dumper.scheduleAtFixedRate(() -> System.out.println(dump()), dumpSec, dumpSec, TimeUnit.SECONDS);
+        }
+    }
+
+    /** Vài dòng gọn: bộ đếm + các bước đã có mẫu. */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder("[MET ]");
+        counters().forEach((k, v) -> sb.append(' ').append(k).append('=').append(v));
+        for (LatencyHistogram h : HISTOGRAMS) {
+            if (h.getCount() > 0) {
+                sb.append("\n[MET ]   ").append(h.compact());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, Long> counters() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("frames", FRAMES.sum());
+        m.put("frameSkips", FRAME_SKIPS.sum());
+        m.put("frameMisses", FRAME_MISSES.sum());
+        m.put("changes", HISTORY_CHANGES.sum());
+        m.put("rounds", ROUNDS_CONFIRMED.sum());
+        m.put("timeouts", PREDICT_TIMEOUTS.sum());
+        m.put("retries", RETRIES.sum());
+        m.put("fallbacks", FALLBACKS.sum());
+        m.put("specHits", SPEC_HITS.sum());
+        m.put("specMisses", SPEC_MISSES.sum());
+        m.put("recalibrations", RECALIBRATIONS.sum());
+        m.put("calibrationFailures", CALIBRATION_FAILURES.sum());
+        return m;
+    }
+
+    private static Map<String, Double> perStage(ToDoubleFunction<LatencyHistogram> f) {
+        Map<String, Double> m = new LinkedHashMap<>();
+        for (LatencyHistogram h : HISTOGRAMS) {
+            m.put(h.getName(), f.applyAsDouble(h));
+        }
+        return m;
+    }
+
+    // ===== MXBean =====
+    @Override
+    public Map<String, Long> getCounters() {
+        return counters();
+    }
+
+    @Override
+    public Map<String, Long> getLatencyCounts() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        for (LatencyHistogram h : HISTOGRAMS) {
+            m.put(h.getName(), h.getCount());
+        }
+        return m;
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP50Millis() {
+        return perStage(h -> h.percentileNs(0.50) / 1e6);
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP99Millis() {
+        return perStage(h -> h.percentileNs(0.99) / 1e6);
+    }
+
+    @Override
+    public Map<String, Double> getLatencyMaxMillis() {
+        return perStage(h -> h.getMaxNs() / 1e6);
+    }
+
+    @Override
+    public String getDump() {
+        return dump();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram h : HISTOGRAMS) {
+            h.reset();
+        }
+        FRAMES.reset();
+        FRAME_SKIPS.reset();
+        FRAME_MISSES.reset();
+        HISTORY_CHANGES.reset();
+        ROUNDS_CONFIRMED.reset();
+        PREDICT_TIMEOUTS.reset();
+        RETRIES.reset();
+        FALLBACKS.reset();
+        SPEC_HITS.reset();
+        SPEC_MISSES.reset();
+        RECALIBRATIONS.reset();
+        CALIBRATION_FAILURES.reset();
+    }
+}
@@ -0,0 +1,22 @@
+package controller;
+
+import java.util.Map;
+
+/** JMX view of {@link Metrics} (ObjectName {@value Metrics#OBJECT_NAME}). */
+public interface MetricsMXBean {
+
+    Map<String, Long> getCounters();
+
+    /** Sample count per stage. */
+    Map<String, Long> getLatencyCounts();
+
+    Map<String, Double> getLatencyP50Millis();
+
+    Map<String, Double> getLatencyP99Millis();
+
+    Map<String, Double> getLatencyMaxMillis();
+
+    String getDump();
+
+    void reset();
+}
@@ -0,0 +1,260 @@
+package controller;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import model.History;
+
+/**
+ * Scans several {@link TableRegion}s from one thread and one {@link FrameSource}.
+ *
+ * Regions whose ROIs sit close together are merged into one capture group:
+ * one capture per group per period, then every region
+ * in the group is sampled out of that image at its own offset.  Two groups
+ * merge when the bounding box of both is at most {@link #MERGE_SLACK} times
+ * their combined area, i.e. when capturing the gap costs less than a
+ * second capture call.
+ *
+ * Each table is calibrated on its own ({@link DotCalibrator}, through a
+ * {@link CalibrationTracker} as in {@link DotScannerService}): until it
+ * is, it is sampled at its nominal centres and its full ROI stays in the
+ * group capture (calibration reads it out of that same capture); once it
+ * is, only its tight box does.  A group captures the union of its
+ * members' boxes, so a group whose tables are all calibrated captures
+ * little more than the dots.  Low confidence drops a table back to its ROI
+ * and recalibrates it.
+ *
+ * Listeners are per table and are called on the scanner thread, only when
+ * that table's history changes (same contract as {@link DotScannerService}).
+ */
+public class MultiTableScanner {
+
+    static final double MERGE_SLACK = 1.5;
+
+    private final List<TableRegion> regions;
+    private final long periodMs;
+    private final FrameSource source;
+    private final List<List<HistoryListener>> listeners = new ArrayList<>();
+    private final List<Group> groups;
+    private final AtomicReferenceArray<History> lastHistory; // ghi: thread scanner, đọc: thread bất kỳ
+    private volatile boolean running = false;
+    // ghi: thread scanner, đọc: thread bất kỳ; đếm cả khi Metrics tắt (tổng mọi bàn)
+    private volatile long frameSkips, frameMisses;
+
+    // ===== HÌNH HỌC TỪNG BÀN (chỉ thread scanner) =====
+    private final CalibrationTracker[] calib;
+    private final int[][] cx, cy;     // tâm chấm trong ảnh chụp của group
+    private final long[] lastFp;
+
+    // 1 lần chụp màn hình, nhiều bàn bên trong
+    private static final class Group {
+        final Rectangle bounds;       // hợp các ROI (dùng để gom)
+        Rectangle capture;            // hợp hộp sát (bàn đã hiệu chỉnh) / ROI (bàn chưa)
+        final List<Integer> members = new ArrayList<>();
+
+        Group(Rectangle bounds, int member) {
+            this.bounds = bounds;
+            this.members.add(member);
+        }
+    }
+
+    public MultiTableScanner(List<TableRegion> regions, long periodMs) {
+        this(regions, periodMs, null);
+    }
+
+    /** {@code source} null = màn hình thật ({@link RobotFrameSource}). */
+    public MultiTableScanner(List<TableRegion> regions, long periodMs, FrameSource source) {
+        if (regions.isEmpty()) {
+            throw new IllegalArgumentException("no table regions");
+        }
+        this.regions = List.copyOf(regions);
+        this.periodMs = periodMs;
+        this.source = source;
+        this.lastHistory = new AtomicReferenceArray<>(regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            listeners.add(new CopyOnWriteArrayList<>());
+        }
+        this.groups = group(this.regions);
+        int n = regions.size();
+        this.calib = new CalibrationTracker[n];
+        this.cx = new int[n][];
+        this.cy = new int[n][];
+        this.lastFp = new long[n];
+        for (int i = 0; i < n; i++) {
+            calib[i] = new CalibrationTracker(this.regions.get(i).name());
+        }
+    }
+
+    public void addListener(int table, HistoryListener l) {
+        listeners.get(table).add(l);
+    }
+
+    public int getCaptureGroups() {
+        return groups.size();
+    }
+
+    /** Table frames skipped because their fingerprint matched the previous frame, all tables. */
+    public long getFrameSkips() {
+        return frameSkips;
+    }
+
+    /** Table frames whose fingerprint changed and were sampled and thresholded, all tables. */
+    public long getFrameMisses() {
+        return frameMisses;
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        Thread t = new Thread(this::loop, "multi-table-scanner");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    /** Lịch sử mới nhất của bàn {@code table}; gọi được từ thread bất kỳ. */
+    public History getLastHistory(int table) {
+        return lastHistory.get(table);
+    }
+
+    // ===== GOM VÙNG GẦN NHAU =====
+    static List<Group> group(List<TableRegion> regions) {
+        List<Group> gs = new ArrayList<>();
+        for (int i = 0; i < regions.size(); i++) {
+            gs.add(new Group(regions.get(i).roi(), i));
+        }
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            outer:
+            for (int a = 0; a < gs.size(); a++) {
+                for (int b = a + 1; b < gs.size(); b++) {
+                    Rectangle ra = gs.get(a).bounds, rb = gs.get(b).bounds;
+                    Rectangle u = ra.union(rb);
+                    if (area(u) <= MERGE_SLACK * (area(ra) + area(rb))) {
+                        Group g = gs.get(a);
+                        g.bounds.setBounds(u);
+                        g.members.addAll(gs.remove(b).members);
+                        merged = true;
+                        break outer;
+                    }
+                }
+            }
+        }
+        return gs;
+    }
+
+    private static double area(Rectangle r) {
+        return (double) r.width * r.height;
+    }
+
+    // ==================== nội bộ ======================
+    private void loop() {
+        try (FrameSource frames = (source != null) ? source : new RobotFrameSource()) {
+            int n = regions.size();
+            DotSampler[] samplers = new DotSampler[n];
+            for (int i = 0; i < n; i++) {
+                samplers[i] = new DotSampler(TableRegion.NUM_DOTS);
+            }
+            for (Group g : groups) {
+                layout(g);
+            }
+            long frame = 0;
+
+            while (running) {
+                long t0 = System.currentTimeMillis();
+                for (Group g : groups) {
+                    long n0 = Metrics.ENABLED ? System.nanoTime() : 0L;
+                    BufferedImage img = frames.capture(g.capture);
+                    if (Metrics.ENABLED) {
+                        Metrics.CAPTURE.since(n0);
+                        Metrics.FRAMES.increment();
+                    }
+                    boolean moved = false;
+                    for (int i : g.members) {
+                        // bàn này không đổi gì so với frame trước -> khỏi sample
+                        long fp = DotSampler.fingerprint(img, cx[i], cy[i], TableRegion.PATCH);
+                        if (fp == lastFp[i] && lastHistory.get(i) != null && !calib[i].lowConfidence()) {
+                            frameSkips++;
+                            if (Metrics.ENABLED) Metrics.FRAME_SKIPS.increment();
+                            continue;
+                        }
+                        lastFp[i] = fp;
+                        frameMisses++;
+                        if (Metrics.ENABLED) Metrics.FRAME_MISSES.increment();
+                        long n1 = Metrics.ENABLED ? System.nanoTime() : 0L;
+                        samplers[i].measure(img, cx[i], cy[i], TableRegion.PATCH);
+                        long n2 = Metrics.ENABLED ? System.nanoTime() : 0L;
+                        int bits = samplers[i].classify();
+                        if (Metrics.ENABLED) {
+                            Metrics.SAMPLE.record(n2 - n1);
+                            Metrics.THRESHOLD.since(n2);
+                        }
+                        // chấm nhạt dần so với lúc hiệu chỉnh -> về ROI đầy đủ, hiệu chỉnh lại
+                        DotCalibrator.Calibration c = calib[i].get();
+                        if (c != null && calib[i].check(
+                                DotCalibrator.confidence(img, g.capture, c, samplers[i].lastBrightness()), frame)) {
+                            moved = true;
+                            continue;
+                        }
+                        History prev = lastHistory.get(i);
+                        if (prev == null || prev.bits() != bits) {
+                            History h = History.of(bits, TableRegion.NUM_DOTS);
+                            lastHistory.set(i, h);
+                            for (HistoryListener l : listeners.get(i)) l.onHistory(h, t0);
+                            if (Metrics.ENABLED) Metrics.HISTORY_CHANGES.increment();
+                        }
+                    }
+                    // hiệu chỉnh từ chính ảnh vừa chụp: bàn chưa hiệu chỉnh có cả ROI trong đó
+                    for (int i : g.members) {
+                        Rectangle roi = regions.get(i).roi();
+                        if (calib[i].due(frame) && g.capture.contains(roi)) {
+                            BufferedImage full = img.getSubimage(roi.x - g.capture.x, roi.y - g.capture.y,
+                                    roi.width, roi.height);
+                            moved |= calib[i].offer(DotCalibrator.calibrate(full, roi, regions.get(i)), frame);
+                        }
+                    }
+                    if (moved) {
+                        layout(g);
+                    }
+                }
+                frame++;
+                long sleep = periodMs - (System.currentTimeMillis() - t0);
+                if (sleep > 0) Thread.sleep(sleep);
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    // hộp chụp của group + tâm chấm từng bàn trong hộp đó, sau mỗi lần hình học đổi
+    private void layout(Group g) {
+        Rectangle capture = null;
+        for (int i : g.members) {
+            DotCalibrator.Calibration c = calib[i].get();
+            Rectangle box = c != null ? c.tight : regions.get(i).roi();
+            capture = capture == null ? new Rectangle(box) : capture.union(box);
+        }
+        g.capture = capture;
+        for (int i : g.members) {
+            DotCalibrator.Calibration c = calib[i].get();
+            TableRegion region = regions.get(i);
+            if (c != null) {
+                cx[i] = c.cxIn(capture);
+                cy[i] = c.cyIn(capture);
+            } else {
+                cx[i] = region.centersX(capture);
+                cy[i] = new int[TableRegion.NUM_DOTS];
+                Arrays.fill(cy[i], region.centerY(capture));
+            }
+            lastFp[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package controller;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+/**
+ * Replays frames of one table recorded to a packed file, read through a
+ * read-only memory mapping: a capture copies only the rows of the
+ * requested rectangle out of the page cache into a reused image.
+ *
+ * Layout: 64-byte header of little-endian ints ("SBFR", version, first x/y,
+ * last x/y, ROI x/y/width/height, frame count), then every frame as
+ * width x height 0xRRGGBB ints, row by row.  The header carries the
+ * {@link TableRegion}, so a file is self-describing.  Frames are played in
+ * order, one per capture, wrapping around at the end.
+ *
+ * Files come from {@link #record} (live capture) or {@link #pack} (a
+ * directory of PNGs of the ROI, e.g. screenshots).
+ */
+public final class RecordedFrameSource implements FrameSource {
+
+    static final int HEADER_BYTES = 64;
+    private static final int MAGIC = 0x52464253; // "SBFR" little-endian
+    private static final int VERSION = 1;
+    // mỗi mapping tối đa ~1 GB, cắt đúng biên frame
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    private final TableRegion region;
+    private final Rectangle bounds;
+    private final int frames, framesPerSegment;
+    private final IntBuffer[] segments;
+    private final BufferedImage canvas;
+    private final int[] px;
+    private int next;
+
+    private RecordedFrameSource(TableRegion region, Rectangle bounds, int frames, IntBuffer[] segments, int framesPerSegment) {
+        this.region = region;
+        this.bounds = bounds;
+        this.frames = frames;
+        this.segments = segments;
+        this.framesPerSegment = framesPerSegment;
+        this.canvas = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_RGB);
+        this.px = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+    }
+
+    public static RecordedFrameSource open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer h = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (h.getInt(0) != MAGIC || h.getInt(4) != VERSION) {
+                throw new IOException("not a recorded frame file: " + path);
+            }
+            TableRegion region = new TableRegion("recorded",
+                    new Point(h.getInt(8), h.getInt(12)), new Point(h.getInt(16), h.getInt(20)));
+            Rectangle bounds = new Rectangle(h.getInt(24), h.getInt(28), h.getInt(32), h.getInt(36));
+            int frames = h.getInt(40);
+            long frameBytes = 4L * bounds.width * bounds.height;
+            if (frames <= 0 || ch.size() < HEADER_BYTES + frames * frameBytes) {
+                throw new IOException("truncated or empty frame file: " + path);
+            }
+            int perSegment = (int) Math.max(1, SEGMENT_BYTES / frameBytes);
+            IntBuffer[] segments = new IntBuffer[(frames + perSegment - 1) / perSegment];
+            for (int s = 0; s < segments.length; s++) {
+                int count = Math.min(perSegment, frames - s * perSegment);
+                segments[s] = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + s * perSegment * frameBytes, count * frameBytes)
+                        .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            }
+            // mapping vẫn sống sau khi đóng channel
+            return new RecordedFrameSource(region, bounds, frames, segments, perSegment);
+        }
+    }
+
+    public TableRegion getRegion() {
+        return region;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    @Override
+    public BufferedImage capture(Rectangle r) {
+        if (!bounds.contains(r)) {
+            throw new IllegalArgumentException("capture " + r + " outside recorded ROI " + bounds);
+        }
+        int f = next;
+        next = (next + 1 == frames) ? 0 : next + 1;
+        IntBuffer seg = segments[f / framesPerSegment];
+        int w = bounds.width;
+        int frameBase = (f % framesPerSegment) * w * bounds.height;
+        int x0 = r.x - bounds.x, y0 = r.y - bounds.y;
+        for (int y = y0; y < y0 + r.height; y++) {
+            seg.get(frameBase + y * w + x0, px, y * w + x0, r.width);
+        }
+        return canvas.getSubimage(x0, y0, r.width, r.height);
+    }
+
+    /** Captures {@code frames} frames of {@code region}'s ROI, one every {@code periodMs}. */
+    public static int record(FrameSource src, TableRegion region, int frames, long periodMs, Path out)
+            throws IOException, InterruptedException {
+        Rectangle roi = region.roi();
+        try (Writer w = new Writer(out, region, roi)) {
+            for (int i = 0; i < frames; i++) {
+                long t0 = System.currentTimeMillis();
+                w.add(src.capture(roi));
+                long sleep = periodMs - (System.currentTimeMillis() - t0);
+                if (sleep > 0) Thread.sleep(sleep);
+            }
+            return w.count;
+        }
+    }
+
+    /** Packs every *.png in {@code dir} (name order, each exactly the ROI size). */
+    public static int pack(Path dir, TableRegion region, Path out) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.png")) {
+            ds.forEach(files::add);
+        }
+        files.sort(null);
+        try (Writer w = new Writer(out, region, region.roi())) {
+            for (Path p : files) {
+                BufferedImage img = ImageIO.read(p.toFile());
+                if (img == null) {
+                    throw new IOException("unreadable image: " + p);
+                }
+                w.add(img);
+            }
+            return w.count;
+        }
+    }
+
+    // ghi tuần tự, số frame vá vào header khi đóng
+    private static final class Writer implements AutoCloseable {
+        final FileChannel ch;
+        final Rectangle roi;
+        final int[] row;
+        final ByteBuffer buf;
+        int count;
+
+        Writer(Path out, TableRegion region, Rectangle roi) throws IOException {
+            this.ch = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.roi = roi;
+            this.row = new int[roi.width];
+            this.buf = ByteBuffer.allocateDirect(Math.max(HEADER_BYTES, 4 * roi.width)).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putInt(VERSION)
+                    .putInt(region.first().x).putInt(region.first().y)
+                    .putInt(region.last().x).putInt(region.last().y)
+                    .putInt(roi.x).putInt(roi.y).putInt(roi.width).putInt(roi.height).putInt(0);
+            buf.position(HEADER_BYTES).flip();
+            writeFully();
+        }
+
+        void add(BufferedImage img) throws IOException {
+            if (img.getWidth() != roi.width || img.getHeight() != roi.height) {
+                throw new IllegalArgumentException("frame " + img.getWidth() + "x" + img.getHeight()
+                        + " != ROI " + roi.width + "x" + roi.height);
+            }
+            for (int y = 0; y < roi.height; y++) {
+                img.getRGB(0, y, roi.width, 1, row, 0, roi.width);
+                buf.clear();
+                for (int v : row) {
+                    buf.putInt(v & 0xFFFFFF);
+                }
+                buf.flip();
+                writeFully();
+            }
+            count++;
+        }
+
+        private void writeFully() throws IOException {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                buf.clear();
+                buf.putInt(count).flip();
+                while (buf.hasRemaining()) {
+                    ch.write(buf, 40 + 4 - buf.remaining());
+                }
+            } finally {
+                ch.close();
+            }
+        }
+    }
+}
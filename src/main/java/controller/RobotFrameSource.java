@@ -0,0 +1,21 @@
+package controller;
+
+import java.awt.AWTException;
+import java.awt.Rectangle;
+import java.awt.Robot;
+import java.awt.image.BufferedImage;
+
+/** Live screen capture; needs a display (throws on a headless JVM). */
+public final class RobotFrameSource implements FrameSource {
+
+    private final Robot robot;
+
+    public RobotFrameSource() throws AWTException {
+        this.robot = new Robot();
+    }
+
+    @Override
+    public BufferedImage capture(Rectangle r) {
+        return robot.createScreenCapture(r);
+    }
+}
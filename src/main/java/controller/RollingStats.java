@@ -0,0 +1,211 @@
+package controller;
+
+/**
+ * Sliding-window statistics over the last N bets, updated in O(1) per bet
+ * (amortised O(1) for the drawdown deques); nothing is recomputed from
+ * history.
+ *
+ * <ul>
+ * <li>accuracy and PnL over each window (default 50/200/1000): ring buffers
+ *     of outcome and PnL, one running sum per window;</li>
+ * <li>drawdown over the largest window: a monotonic deque keeps the
+ *     window's peak of cumulative PnL, so the current drawdown from that
+ *     peak is O(1); a second deque keeps the worst of those drawdowns still
+ *     inside the window.  The peak candidates are the span + 1 levels
+ *     around the window's bets, including the level before its oldest bet
+ *     (0 at the start of the session), so a loss on the first bet in the
+ *     window counts, as in {@link Bankroll#getMaxDrawdown()};</li>
+ * <li>current streak and the distribution of finished win/loss streaks
+ *     for the whole session.</li>
+ * </ul>
+ * Single-threaded, like the {@code Statistic} that owns it.
+ */
+public final class RollingStats {
+
+    public static final int[] DEFAULT_WINDOWS = {50, 200, 1000};
+    static final int MAX_STREAK = 64;
+
+    private final int[] windows;
+    private final int span;           // = cửa sổ lớn nhất
+    private final int mask;           // ring dài 2^k >= span, chỉ số = seq & mask
+    private final boolean[] win;      // ring: kết quả từng ván
+    private final double[] pnl;       // ring: PnL từng ván
+    private final int[] wins;         // số ván thắng trong mỗi cửa sổ
+    private final double[] pnlSum;    // tổng PnL trong mỗi cửa sổ
+    private long bets;
+
+    // Drawdown theo "mốc" p = số ván đã cược: cum[p & mask] = PnL cộng dồn sau p ván (mốc 0 = 0),
+    // dd[p & mask] = drawdown tại mốc p
+    private final double[] cum;
+    private final double[] dd;
+    private final long[] peakQ, ddQ;  // deque mốc, giảm dần theo cum / dd
+    private int peakHead, peakSize, ddHead, ddSize;
+    private double total;
+
+    private int streak;               // >0 chuỗi thắng, <0 chuỗi thua
+    private final long[] winStreaks = new long[MAX_STREAK + 1];
+    private final long[] lossStreaks = new long[MAX_STREAK + 1];
+
+    public RollingStats() {
+        this(DEFAULT_WINDOWS);
+    }
+
+    public RollingStats(int... windows) {
+        int max = 0;
+        for (int w : windows) {
+            if (w <= 0) {
+                throw new IllegalArgumentException("window must be > 0: " + w);
+            }
+            max = Math.max(max, w);
+        }
+        int ring = Integer.highestOneBit(max) << 1; // >= span + 1 mốc cho drawdown
+        this.windows = windows.clone();
+        this.span = max;
+        this.mask = ring - 1;
+        this.win = new boolean[ring];
+        this.pnl = new double[ring];
+        this.wins = new int[windows.length];
+        this.pnlSum = new double[windows.length];
+        this.cum = new double[ring];
+        this.dd = new double[ring];
+        this.peakQ = new long[ring];
+        this.ddQ = new long[ring];
+        peakSize = 1; // mốc 0: trước ván đầu tiên, cum = 0
+    }
+
+    /** Records one settled bet (SKIP rounds are not bets and are not recorded). */
+    public void onBet(boolean won, double roundPnl) {
+        long seq = bets++;
+        int slot = (int) seq & mask;
+        for (int k = 0; k < windows.length; k++) {
+            long out = seq - windows[k]; // ván rời cửa sổ k
+            if (out >= 0) {
+                int o = (int) out & mask;
+                wins[k] -= win[o] ? 1 : 0;
+                pnlSum[k] -= pnl[o];
+            }
+            wins[k] += won ? 1 : 0;
+            pnlSum[k] += roundPnl;
+        }
+        win[slot] = won;
+        pnl[slot] = roundPnl;
+
+        total += roundPnl;
+        long point = seq + 1;
+        int ps = (int) point & mask;
+        cum[ps] = total;
+        // đỉnh cum trên span + 1 mốc: từ mốc ngay trước ván cũ nhất trong cửa sổ tới mốc hiện tại
+        // (bỏ phần tử hết hạn trước khi thêm -> deque không vượt span + 1)
+        if (peakSize > 0 && peakQ[peakHead] < point - span) {
+            peakHead = (peakHead + 1) & mask;
+            peakSize--;
+        }
+        while (peakSize > 0 && cum[(int) peakQ[(peakHead + peakSize - 1) & mask] & mask] <= total) {
+            peakSize--;
+        }
+        peakQ[(peakHead + peakSize++) & mask] = point;
+        double cur = cum[(int) peakQ[peakHead] & mask] - total;
+        dd[ps] = cur;
+        // drawdown lớn nhất còn trong cửa sổ (mốc sau từng ván trong cửa sổ)
+        if (ddSize > 0 && ddQ[ddHead] <= point - span) {
+            ddHead = (ddHead + 1) & mask;
+            ddSize--;
+        }
+        while (ddSize > 0 && dd[(int) ddQ[(ddHead + ddSize - 1) & mask] & mask] <= cur) {
+            ddSize--;
+        }
+        ddQ[(ddHead + ddSize++) & mask] = point;
+
+        if (won) {
+            if (streak < 0) {
+                lossStreaks[Math.min(MAX_STREAK, -streak)]++;
+                streak = 0;
+            }
+            streak++;
+        } else {
+            if (streak > 0) {
+                winStreaks[Math.min(MAX_STREAK, streak)]++;
+                streak = 0;
+            }
+            streak--;
+        }
+    }
+
+    public long getBets() {
+        return bets;
+    }
+
+    public int[] getWindows() {
+        return windows.clone();
+    }
+
+    public int windowCount() {
+        return windows.length;
+    }
+
+    /** Size of window {@code k} (no copy, unlike {@link #getWindows()}). */
+    public int window(int k) {
+        return windows[k];
+    }
+
+    /** Bets currently inside window {@code k} (less than its size early on). */
+    public int filled(int k) {
+        return (int) Math.min(bets, windows[k]);
+    }
+
+    public double accuracy(int k) {
+        int n = filled(k);
+        return n == 0 ? 0.0 : (double) wins[k] / n;
+    }
+
+    public double pnl(int k) {
+        return pnlSum[k];
+    }
+
+    /** Current drawdown from the peak of cumulative PnL within the largest window. */
+    public double drawdown() {
+        return bets == 0 ? 0.0 : dd[(int) bets & mask];
+    }
+
+    /** Worst {@link #drawdown()} seen within the largest window. */
+    public double maxDrawdown() {
+        return ddSize == 0 ? 0.0 : dd[(int) ddQ[ddHead] & mask];
+    }
+
+    /** > 0: current winning streak, < 0: current losing streak. */
+    public int currentStreak() {
+        return streak;
+    }
+
+    /** Count of finished losing streaks by length (index {@value #MAX_STREAK} = that or longer). */
+    public long[] losingStreaks() {
+        return lossStreaks.clone();
+    }
+
+    public long[] winningStreaks() {
+        return winStreaks.clone();
+    }
+
+    /** "acc50=52.0% pnl50=+12.00 ... dd=18.00 mdd1000=45.00 streak=L3" */
+    public String compact() {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < windows.length; k++) {
+            sb.append(String.format("acc%d=%.1f%% pnl%d=%+.2f ", windows[k], accuracy(k) * 100.0, windows[k], pnl(k)));
+        }
+        sb.append(String.format("dd=%.2f mdd%d=%.2f streak=%s%d", drawdown(), span, maxDrawdown(),
+                streak >= 0 ? "W" : "L", Math.abs(streak)));
+        return sb.toString();
+    }
+
+    /** Finished losing streaks "L1:40 L2:21 ..." (non-empty lengths only). */
+    public String streakSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (int l = 1; l <= MAX_STREAK; l++) {
+            if (lossStreaks[l] > 0) {
+                sb.append(sb.length() == 0 ? "" : " ").append('L').append(l)
+                        .append(l == MAX_STREAK ? "+" : "").append(':').append(lossStreaks[l]);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,254 @@
+package controller;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Offline group-by queries over {@link RoundColumns}.  Every query is the
+ * same shape: map each round to a group (or skip it), and sum rounds,
+ * bets, wins and PnL per group.  Rows are split into fixed chunks, each
+ * chunk aggregates into its own arrays on the common fork-join pool, and
+ * the partial arrays are added up at the end.
+ */
+public final class RoundAnalytics {
+
+    private static final int CHUNK = 1 << 18;
+    static final int MAX_STREAK = 63;
+
+    private final RoundColumns cols;
+
+    public RoundAnalytics(RoundColumns cols) {
+        this.cols = cols;
+    }
+
+    /** Per-group sums; {@code groups} rows. */
+    public static final class Agg {
+        public final long[] rounds, bets, wins;
+        public final double[] pnl;
+
+        Agg(int groups) {
+            rounds = new long[groups];
+            bets = new long[groups];
+            wins = new long[groups];
+            pnl = new double[groups];
+        }
+
+        // không rẽ nhánh: ván SKIP có bet = win = 0 và pnl = 0
+        void add(int g, int bet, int win, double p) {
+            rounds[g]++;
+            bets[g] += bet;
+            wins[g] += win;
+            pnl[g] += p;
+        }
+
+        Agg merge(Agg o) {
+            for (int g = 0; g < rounds.length; g++) {
+                rounds[g] += o.rounds[g];
+                bets[g] += o.bets[g];
+                wins[g] += o.wins[g];
+                pnl[g] += o.pnl[g];
+            }
+            return this;
+        }
+
+        public double hitRate(int g) {
+            return bets[g] == 0 ? 0.0 : (double) wins[g] / bets[g];
+        }
+    }
+
+    // round -> nhóm, -1 = bỏ qua
+    @FunctionalInterface
+    private interface GroupKey {
+        int of(int i);
+    }
+
+    // code (pred | actual << 2 | source << 3) -> bit 0 = có cược, bit 1 = thắng
+    private static final byte[] BET_WIN = new byte[32];
+
+    static {
+        for (int c = 0; c < 32; c++) {
+            int p = c & 3, x = (c >> 2) & 1;
+            boolean bet = p != Bankroll.Pred.SKIP.ordinal();
+            boolean win = (p == 0 && x == 0) || (p == 1 && x == 1);
+            BET_WIN[c] = (byte) ((bet ? 1 : 0) | (win ? 2 : 0));
+        }
+    }
+
+    private Agg groupBy(int groups, GroupKey key) {
+        int chunks = (cols.size + CHUNK - 1) / CHUNK;
+        byte[] code = cols.code;
+        double[] pnl = cols.pnl;
+        return IntStream.range(0, chunks).parallel().mapToObj(c -> {
+            Agg a = new Agg(groups);
+            for (int i = c * CHUNK, end = Math.min(cols.size, i + CHUNK); i < end; i++) {
+                int g = key.of(i);
+                if (g >= 0) {
+                    int f = BET_WIN[code[i] & 31];
+                    a.add(g, f & 1, f >> 1, pnl[i]);
+                }
+            }
+            return a;
+        }).reduce(Agg::merge).orElseGet(() -> new Agg(groups));
+    }
+
+    // ===== QUERIES =====
+
+    /** 24 groups: local hour of day of the settle time. */
+    public Agg byHour(ZoneId zone) {
+        long[][] offsets = offsetTable(zone);
+        long[] from = offsets[0], off = offsets[1];
+        return groupBy(24, i -> {
+            long t = cols.atMs[i];
+            // ít chuyển giờ (DST) -> tìm tuyến tính từ cuối
+            int k = from.length - 1;
+            while (k > 0 && t < from[k]) {
+                k--;
+            }
+            return (int) Math.floorMod(Math.floorDiv(t + off[k], 3_600_000L), 24L);
+        });
+    }
+
+    /** source * 6 + pred * 2 + actual (4 sources x 3 preds x 2 actuals). */
+    public Agg bySource() {
+        return groupBy(24, i -> cols.source(i) * 6 + (cols.code[i] & 3) * 2 + ((cols.code[i] >> 2) & 1));
+    }
+
+    /** predictor * 6 + pred * 2 + actual, predictor = index in {@link RoundColumns#predictors()}. */
+    public Agg byPredictor() {
+        return groupBy(cols.predictors().size() * 6,
+                i -> cols.predictor[i] * 6 + (cols.code[i] & 3) * 2 + ((cols.code[i] >> 2) & 1));
+    }
+
+    /** Losing streak going into the round, capped at {@link #MAX_STREAK}. */
+    public Agg byStreak() {
+        return groupBy(MAX_STREAK + 1, i -> Math.min(MAX_STREAK, cols.streakIn[i]));
+    }
+
+    /** 2^13 groups: full 13-dot history the pick was made from. */
+    public Agg byPattern() {
+        return groupBy(1 << 13, i -> cols.length[i] == 13 ? cols.bits[i] & 0x1FFF : -1);
+    }
+
+    // [0] = thời điểm bắt đầu hiệu lực, [1] = offset ms, trên khoảng thời gian của dữ liệu
+    private long[][] offsetTable(ZoneId zone) {
+        ZoneRules rules = zone.getRules();
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (int i = 0; i < cols.size; i++) {
+            min = Math.min(min, cols.atMs[i]);
+            max = Math.max(max, cols.atMs[i]);
+        }
+        List<long[]> rows = new ArrayList<>();
+        Instant at = Instant.ofEpochMilli(cols.size == 0 ? 0 : min);
+        rows.add(new long[]{Long.MIN_VALUE, rules.getOffset(at).getTotalSeconds() * 1000L});
+        ZoneOffsetTransition tr = rules.nextTransition(at);
+        while (tr != null && tr.toEpochSecond() * 1000L <= max) {
+            rows.add(new long[]{tr.toEpochSecond() * 1000L, tr.getOffsetAfter().getTotalSeconds() * 1000L});
+            tr = rules.nextTransition(tr.getInstant());
+        }
+        long[][] t = new long[2][rows.size()];
+        for (int k = 0; k < rows.size(); k++) {
+            t[0][k] = rows.get(k)[0];
+            t[1][k] = rows.get(k)[1];
+        }
+        return t;
+    }
+
+    // ===== IN KẾT QUẢ =====
+
+    public static void printByHour(Agg a) {
+        System.out.println("== Accuracy by hour ==");
+        System.out.printf("%4s %10s %10s %8s %12s%n", "hour", "rounds", "bets", "hit%", "PnL");
+        for (int h = 0; h < 24; h++) {
+            if (a.rounds[h] > 0) {
+                System.out.printf("%4d %10d %10d %8.2f %12.2f%n", h, a.rounds[h], a.bets[h], a.hitRate(h) * 100, a.pnl[h]);
+            }
+        }
+    }
+
+    private static final List<String> SOURCES = List.of("model", "retry", "heuristic", "table");
+
+    public static void printBySource(Agg a) {
+        printConfusion("== Confusion by pick source ==", "source", SOURCES, a);
+    }
+
+    /** {@code predictors}: {@link RoundColumns#predictors()} of the columns {@code a} came from. */
+    public static void printByPredictor(Agg a, List<String> predictors) {
+        printConfusion("== Confusion by predictor ==", "predictor", predictors, a);
+    }
+
+    // 1 dòng / nhóm có ván: 6 ô pred->actual, hit%, PnL
+    private static void printConfusion(String title, String column, List<String> rows, Agg a) {
+        int w = column.length();
+        for (String r : rows) {
+            w = Math.max(w, r.length());
+        }
+        System.out.println(title);
+        System.out.printf("%-" + w + "s %9s %9s %9s %9s %9s %9s %8s %12s%n",
+                column, "TAI->T", "TAI->X", "XIU->T", "XIU->X", "SKIP->T", "SKIP->X", "hit%", "PnL");
+        for (int s = 0; s < rows.size(); s++) {
+            long rounds = 0, bets = 0, wins = 0;
+            double pnl = 0;
+            for (int k = 0; k < 6; k++) {
+                int g = s * 6 + k;
+                rounds += a.rounds[g];
+                bets += a.bets[g];
+                wins += a.wins[g];
+                pnl += a.pnl[g];
+            }
+            if (rounds == 0) {
+                continue;
+            }
+            int g = s * 6;
+            System.out.printf("%-" + w + "s %9d %9d %9d %9d %9d %9d %8.2f %12.2f%n", rows.get(s),
+                    a.rounds[g], a.rounds[g + 1], a.rounds[g + 2], a.rounds[g + 3], a.rounds[g + 4], a.rounds[g + 5],
+                    bets == 0 ? 0.0 : 100.0 * wins / bets, pnl);
+        }
+    }
+
+    public static void printByStreak(Agg a) {
+        System.out.println("== PnL by losing streak going into the round ==");
+        System.out.printf("%6s %10s %8s %14s %12s%n", "streak", "bets", "hit%", "PnL", "PnL/bet");
+        for (int s = 0; s <= MAX_STREAK; s++) {
+            if (a.bets[s] > 0) {
+                System.out.printf("%5d%s %10d %8.2f %14.2f %12.2f%n", s, s == MAX_STREAK ? "+" : " ",
+                        a.bets[s], a.hitRate(s) * 100, a.pnl[s], a.pnl[s] / a.bets[s]);
+            }
+        }
+    }
+
+    /** Best and worst {@code top} patterns by hit rate among those with at least {@code minBets} bets. */
+    public static void printByPattern(Agg a, int top, int minBets) {
+        List<Integer> ps = new ArrayList<>();
+        for (int p = 0; p < a.bets.length; p++) {
+            if (a.bets[p] >= minBets) {
+                ps.add(p);
+            }
+        }
+        ps.sort(Comparator.<Integer>comparingDouble(a::hitRate).reversed());
+        System.out.printf("== Hit rate per 13-dot pattern (%d patterns with >= %d bets) ==%n", ps.size(), minBets);
+        System.out.printf("%-13s %8s %8s %12s%n", "pattern", "bets", "hit%", "PnL");
+        for (int k = 0; k < ps.size(); k++) {
+            if (k == top && ps.size() > 2 * top) {
+                System.out.println("...");
+                k = ps.size() - top;
+            }
+            int p = ps.get(k);
+            System.out.printf("%-13s %8d %8.2f %12.2f%n", pattern(p), a.bets[p], a.hitRate(p) * 100, a.pnl[p]);
+        }
+    }
+
+    // bit cao nhất = chấm cũ nhất, giống History.toString()
+    private static String pattern(int bits) {
+        char[] c = new char[13];
+        for (int i = 0; i < 13; i++) {
+            c[i] = ((bits >>> (12 - i)) & 1) != 0 ? 'T' : 'X';
+        }
+        return new String(c);
+    }
+}
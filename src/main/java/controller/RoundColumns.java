@@ -0,0 +1,161 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rounds from one or more {@link RoundJournal} files, column by column in
+ * primitive arrays (≈25 bytes per round), for {@link RoundAnalytics}.
+ *
+ * Besides the journal fields two columns are derived while loading, since
+ * they depend on the previous rounds of the same journal: the PnL of the
+ * round itself and the losing streak going into it.
+ *
+ * The predictor of a round is an index into {@link #predictors()}, the
+ * names of every journal merged into one list (0 = not recorded), so the
+ * same predictor groups together across files whatever code each journal
+ * gave it.
+ */
+public final class RoundColumns {
+
+    /** Name of predictor 0: rounds journaled without {@link RoundJournal#setPredictor}. */
+    public static final String UNKNOWN = "(unknown)";
+
+    private static final Bankroll.Pred[] PREDS = Bankroll.Pred.values();
+
+    int size;
+    long[] atMs;
+    int[] bits;
+    byte[] length;
+    /** pred | actual << 2 | source << 3 (mã predictor của journal đã bỏ, xem predictor) */
+    byte[] code;
+    /** chỉ số trong predictors */
+    byte[] predictor;
+    /** PnL của riêng ván đó (0 khi SKIP) */
+    double[] pnl;
+    /** chuỗi thua liên tiếp trước ván (chỉ tính ván có cược) */
+    short[] streakIn;
+
+    private final List<String> predictors = new ArrayList<>(List.of(UNKNOWN));
+
+    private RoundColumns(int capacity) {
+        atMs = new long[capacity];
+        bits = new int[capacity];
+        length = new byte[capacity];
+        code = new byte[capacity];
+        predictor = new byte[capacity];
+        pnl = new double[capacity];
+        streakIn = new short[capacity];
+    }
+
+    public static RoundColumns load(List<Path> journals) throws IOException {
+        RoundColumns c = new RoundColumns(1 << 16);
+        for (Path p : journals) {
+            c.append(p);
+        }
+        return c;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Bankroll.Pred pred(int i) {
+        return PREDS[code[i] & 3];
+    }
+
+    public Bankroll.Actual actual(int i) {
+        return (code[i] & 4) != 0 ? Bankroll.Actual.X : Bankroll.Actual.T;
+    }
+
+    public int source(int i) {
+        return (code[i] >> 3) & 3;
+    }
+
+    /** Predictor names; index 0 is {@link #UNKNOWN}. */
+    public List<String> predictors() {
+        return predictors;
+    }
+
+    public String predictor(int i) {
+        return predictors.get(predictor[i]);
+    }
+
+    public boolean isBet(int i) {
+        return (code[i] & 3) != Bankroll.Pred.SKIP.ordinal();
+    }
+
+    /** Có cược và đoán đúng. */
+    public boolean isWin(int i) {
+        int p = code[i] & 3, x = (code[i] >> 2) & 1;
+        return (p == 0 && x == 0) || (p == 1 && x == 1);
+    }
+
+    // Đọc thẳng từ mapping, không qua visitor: 1 vòng lặp tuần tự / file
+    private void append(Path journal) throws IOException {
+        try (FileChannel ch = FileChannel.open(journal, StandardOpenOption.READ)) {
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            m.order(ByteOrder.LITTLE_ENDIAN);
+            RoundJournal.checkHeader(m, journal);
+            List<String> names = RoundJournal.predictors(m);
+            // mã predictor của file này (1..) -> chỉ số chung
+            byte[] global = new byte[names.size() + 1];
+            for (int k = 0; k < names.size(); k++) {
+                int g = predictors.indexOf(names.get(k));
+                if (g < 0) {
+                    if (predictors.size() == Byte.MAX_VALUE + 1) {
+                        throw new IOException("more than " + Byte.MAX_VALUE + " predictors: " + journal);
+                    }
+                    g = predictors.size();
+                    predictors.add(names.get(k));
+                }
+                global[k + 1] = (byte) g;
+            }
+            long cap = (m.capacity() - RoundJournal.HEADER_BYTES) / RoundJournal.RECORD_BYTES;
+            double prevPnl = 0.0;
+            int streak = 0;
+            for (int r = 0, off = RoundJournal.HEADER_BYTES; r < cap; r++, off += RoundJournal.RECORD_BYTES) {
+                // như RoundJournal.open: dừng ở record đầu tiên không hợp lệ
+                if (!RoundJournal.valid(m, off, names.size())) {
+                    break;
+                }
+                ensure(size + 1);
+                int i = size++;
+                atMs[i] = m.getLong(off);
+                bits[i] = m.getInt(off + 8);
+                length[i] = m.get(off + 12);
+                int c = m.get(off + 13) & 0xFF;
+                code[i] = (byte) (c & 31); // cùng cách gói với journal
+                predictor[i] = global[c >>> 5];
+                double cum = m.getDouble(off + 24);
+                pnl[i] = cum - prevPnl;
+                prevPnl = cum;
+                streakIn[i] = (short) Math.min(Short.MAX_VALUE, streak);
+                if (isBet(i)) {
+                    streak = isWin(i) ? 0 : streak + 1;
+                }
+            }
+        }
+    }
+
+    private void ensure(int n) {
+        if (n <= atMs.length) {
+            return;
+        }
+        int cap = Math.max(n, atMs.length * 2);
+        atMs = Arrays.copyOf(atMs, cap);
+        bits = Arrays.copyOf(bits, cap);
+        length = Arrays.copyOf(length, cap);
+        code = Arrays.copyOf(code, cap);
+        predictor = Arrays.copyOf(predictor, cap);
+        pnl = Arrays.copyOf(pnl, cap);
+        streakIn = Arrays.copyOf(streakIn, cap);
+    }
+}
@@ -0,0 +1,290 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import model.History;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Append-only journal of settled rounds, written through a memory-mapped
+ * file so an append is a handful of stores into the page cache.
+ *
+ * Layout: 64-byte header ("SBRJ", version, record size, 0, then from byte
+ * 16 the predictor names: length byte + UTF-8, a zero length ends the
+ * list) followed by fixed 32-byte little-endian records:
+ * <pre>
+ *  0  long   settle time (epoch ms, never 0)
+ *  8  int    history bits the prediction was made from
+ * 12  byte   history length
+ * 13  byte   pred | actual &lt;&lt; 2 | source &lt;&lt; 3 | predictor &lt;&lt; 5
+ *            ({@link Bankroll.Pred} / {@link Bankroll.Actual} ordinals, SOURCE_*,
+ *            predictor k = k-th header name, 0 = not recorded)
+ * 14  short  check: hash of the other 30 bytes
+ * 16  double stake placed (0 when SKIP)
+ * 24  double cumulative PnL after the round
+ * </pre>
+ * The header is a multiple of the record size, so no record crosses a
+ * page and each one reaches the disk whole or not at all.  Dirty pages are
+ * written back in no particular order, though: after a power loss a page
+ * of zeros (or garbage) can sit before pages that made it.  {@link #open}
+ * therefore scans forward and stops at the first record that is empty,
+ * fails its check or holds an impossible code; everything after it is
+ * zeroed (and counted in {@link #getDiscarded()}), so later appends never
+ * resurrect stale records.  A killed process loses nothing: the page cache
+ * is flushed by the kernel.  {@link #close()} forces the mapping to disk.
+ */
+public final class RoundJournal implements AutoCloseable {
+
+    public static final int RECORD_BYTES = 32;
+    public static final int SOURCE_MODEL = 0, SOURCE_RETRY = 1, SOURCE_HEURISTIC = 2, SOURCE_TABLE = 3;
+
+    static final int HEADER_BYTES = 64;
+    static final long GROW_BYTES = 1L << 20;
+    static final int MAGIC = 0x4A524253; // "SBRJ" little-endian
+    static final int VERSION = 2;
+    static final int NAMES_OFF = 16;
+    /** Predictor names a journal can hold: 3 bits per record, 0 = not recorded. */
+    static final int MAX_PREDICTORS = 7;
+
+    private static final Bankroll.Pred[] PREDS = Bankroll.Pred.values();
+    private static final Bankroll.Actual[] ACTUALS = Bankroll.Actual.values();
+
+    /** Callback của {@link #replay}, 1 lần / record theo thứ tự ghi. */
+    @FunctionalInterface
+    public interface Visitor {
+        void round(long atMs, int bits, int length, Bankroll.Pred pred, Bankroll.Actual actual,
+                   int source, double stake, double pnl);
+    }
+
+    private final Path path;
+    private final FileChannel ch;
+    private MappedByteBuffer map;
+    private int size;
+    private int discarded;
+    private int predictor;       // ghi vào các record mới, xem setPredictor
+
+    private RoundJournal(Path path, FileChannel ch) {
+        this.path = path;
+        this.ch = ch;
+    }
+
+    /**
+     * Opens (or creates) the journal and finds its end: the first record
+     * that is not valid.  Records after it are dropped (see the class doc).
+     */
+    public static RoundJournal open(Path path) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        RoundJournal j = new RoundJournal(path, ch);
+        try {
+            j.map(Math.max(ch.size(), GROW_BYTES));
+            if (j.map.getInt(0) == 0) {
+                j.map.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_BYTES);
+            } else {
+                checkHeader(j.map, path);
+            }
+            long cap = j.capacity();
+            int names = predictors(j.map).size();
+            int n = 0;
+            while (n < cap && valid(j.map, HEADER_BYTES + n * RECORD_BYTES, names)) {
+                n++;
+            }
+            j.size = n;
+            j.truncateAfter(n);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+        return j;
+    }
+
+    /** Header của 1 journal đã có: đúng magic, version, kích thước record; sai -> IOException. */
+    static void checkHeader(ByteBuffer m, Path path) throws IOException {
+        if (m.capacity() < HEADER_BYTES || m.getInt(0) != MAGIC || m.getInt(8) != RECORD_BYTES) {
+            throw new IOException("not a round journal: " + path);
+        }
+        if (m.getInt(4) != VERSION) {
+            throw new IOException("unsupported round journal version " + m.getInt(4) + " (expected "
+                    + VERSION + "): " + path);
+        }
+    }
+
+    /**
+     * Tên predictor trong header, theo mã: phần tử k-1 = mã k trong record.
+     * Dừng ở độ dài 0 hoặc tên tràn khỏi header.
+     */
+    static List<String> predictors(ByteBuffer m) {
+        List<String> names = new ArrayList<>();
+        int off = NAMES_OFF;
+        while (off < HEADER_BYTES && names.size() < MAX_PREDICTORS) {
+            int len = m.get(off) & 0xFF;
+            if (len == 0 || off + 1 + len > HEADER_BYTES) {
+                break;
+            }
+            byte[] b = new byte[len];
+            m.get(off + 1, b);
+            names.add(new String(b, UTF_8));
+            off += 1 + len;
+        }
+        return names;
+    }
+
+    /**
+     * Record tại {@code off} có thật: thời gian khác 0, mã hợp lệ (predictor
+     * nằm trong {@code predictors} tên của header), check khớp.
+     */
+    static boolean valid(ByteBuffer m, int off, int predictors) {
+        long at = m.getLong(off);
+        if (at == 0L) {
+            return false;
+        }
+        int len = m.get(off + 12), code = m.get(off + 13) & 0xFF;
+        if (len < 0 || len > History.MAX_LENGTH || (code & 3) >= PREDS.length || code >>> 5 > predictors) {
+            return false;
+        }
+        return (m.getShort(off + 14) & 0xFFFF) == check(m, off);
+    }
+
+    // hash 30 byte còn lại của record (bỏ qua chính ô check)
+    private static int check(ByteBuffer m, int off) {
+        long h = m.getLong(off) * 0x9E3779B97F4A7C15L;
+        h = (h ^ (m.getLong(off + 8) & 0x0000_FFFF_FFFF_FFFFL)) * 0x9E3779B97F4A7C15L;
+        h = (h ^ m.getLong(off + 16)) * 0x9E3779B97F4A7C15L;
+        h = (h ^ m.getLong(off + 24)) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16)) & 0xFFFF;
+    }
+
+    // xoá mọi thứ sau record cuối hợp lệ (khoảng trống trước các page đã kịp ghi, record hỏng)
+    private void truncateAfter(int n) {
+        long cap = capacity();
+        int last = -1;
+        for (int i = n; i < cap; i++) {
+            int off = HEADER_BYTES + i * RECORD_BYTES;
+            if (map.getLong(off) != 0L || map.getLong(off + 8) != 0L
+                    || map.getLong(off + 16) != 0L || map.getLong(off + 24) != 0L) {
+                if (map.getLong(off) != 0L) {
+                    discarded++;
+                }
+                last = i;
+            }
+        }
+        if (last < 0) {
+            return;
+        }
+        for (int off = HEADER_BYTES + n * RECORD_BYTES, end = HEADER_BYTES + (last + 1) * RECORD_BYTES;
+                off < end; off += 8) {
+            map.putLong(off, 0L);
+        }
+        map.force();
+    }
+
+    private void map(long bytes) throws IOException {
+        // map vượt quá kích thước file -> file tự được nới ra (phần mới toàn số 0)
+        map = ch.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private long capacity() {
+        return (map.capacity() - HEADER_BYTES) / RECORD_BYTES;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Records dropped by {@link #open}: the first invalid one and every non-empty one after it. */
+    public int getDiscarded() {
+        return discarded;
+    }
+
+    /** Predictor names in the header; records written under name k-1 carry predictor code k. */
+    public List<String> getPredictors() {
+        return predictors(map);
+    }
+
+    /**
+     * Tags the records appended from now on with predictor {@code name},
+     * adding it to the header the first time this journal sees it.  Fails
+     * when the header has no room left ({@link #MAX_PREDICTORS} names,
+     * 48 bytes): start a new journal then.
+     */
+    public void setPredictor(String name) throws IOException {
+        List<String> names = predictors(map);
+        int k = names.indexOf(name);
+        if (k < 0) {
+            byte[] b = name.getBytes(UTF_8);
+            int off = NAMES_OFF;
+            for (String s : names) {
+                off += 1 + s.getBytes(UTF_8).length;
+            }
+            if (names.size() == MAX_PREDICTORS || b.length == 0 || off + 1 + b.length > HEADER_BYTES) {
+                throw new IOException("no room for predictor \"" + name + "\" in the header of " + path
+                        + " (has " + names + "), use a new journal");
+            }
+            // độ dài ghi sau cùng: tới lúc đó tên chưa tồn tại
+            map.put(off + 1, b);
+            map.put(off, (byte) b.length);
+            map.force();
+            k = names.size();
+        }
+        predictor = k + 1;
+    }
+
+    public void append(long atMs, History history, Bankroll.Pred pred, Bankroll.Actual actual,
+                       int source, double stake, double pnl) throws IOException {
+        if (source < SOURCE_MODEL || source > SOURCE_TABLE) {
+            throw new IllegalArgumentException("source " + source);
+        }
+        if (atMs == 0L) {
+            atMs = 1L; // 0 = hết journal
+        }
+        if (size == capacity()) {
+            map.force();
+            map(map.capacity() + GROW_BYTES);
+        }
+        int off = HEADER_BYTES + size * RECORD_BYTES;
+        map.putInt(off + 8, history == null ? 0 : history.bits());
+        map.put(off + 12, (byte) (history == null ? 0 : history.length()));
+        map.put(off + 13, (byte) (pred.ordinal() | actual.ordinal() << 2 | source << 3 | predictor << 5));
+        map.putDouble(off + 16, stake);
+        map.putDouble(off + 24, pnl);
+        map.putLong(off, atMs);
+        map.putShort(off + 14, (short) check(map, off));
+        size++;
+    }
+
+    /** Visits every record in write order. */
+    public void replay(Visitor v) {
+        MappedByteBuffer m = map;
+        for (int i = 0, off = HEADER_BYTES; i < size; i++, off += RECORD_BYTES) {
+            int code = m.get(off + 13);
+            v.round(m.getLong(off), m.getInt(off + 8), m.get(off + 12),
+                    PREDS[code & 3], ACTUALS[(code >>> 2) & 1], (code >>> 3) & 3,
+                    m.getDouble(off + 16), m.getDouble(off + 24));
+        }
+    }
+
+    /** Flushes written records to disk (msync). */
+    public void force() {
+        map.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        map.force();
+        ch.close();
+    }
+}
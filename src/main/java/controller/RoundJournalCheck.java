@@ -0,0 +1,223 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import model.History;
+
+/**
+ * Crash-recovery check of {@link RoundJournal}, run in the test phase
+ * (pom.xml, execution round-journal-check).  Each case writes a journal,
+ * damages a copy the way a crash or a bad disk would, reopens it and
+ * checks what {@link RoundJournal#open} recovers:
+ * <ul>
+ *   <li>clean close, and a killed process (file copied while still open);</li>
+ *   <li>a lost page in the middle (zeros before records that made it),
+ *       then one more append: nothing after the gap comes back;</li>
+ *   <li>one flipped byte, an impossible code, a file cut inside a record;</li>
+ *   <li>wrong magic and an unknown version are rejected;</li>
+ *   <li>predictor names: runs with different predictors on one journal
+ *       keep each record's predictor, also through {@link RoundColumns};
+ *       a full header refuses a new name.</li>
+ * </ul>
+ *
+ *     java -cp target/classes controller.RoundJournalCheck
+ *
+ * Exits 1 when a case fails.
+ */
+final class RoundJournalCheck {
+
+    private static final int N = 500;
+    private static final int R = RoundJournal.RECORD_BYTES, H = RoundJournal.HEADER_BYTES;
+
+    private static int failures;
+
+    private RoundJournalCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("rj-check");
+        try {
+            run(dir);
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(p);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void run(Path dir) throws IOException {
+        Path clean = dir.resolve("clean.rj");
+        try (RoundJournal j = RoundJournal.open(clean)) {
+            write(j, 0, N);
+        }
+        expect("clean close", clean, N, 0);
+
+        // process bị kill: journal chưa close, chỉ còn page cache -> copy file lúc đang mở
+        Path killed = dir.resolve("killed.rj");
+        RoundJournal open = RoundJournal.open(dir.resolve("live.rj"));
+        write(open, 0, N);
+        Files.copy(open.getPath(), killed);
+        expect("killed process", killed, N, 0);
+        open.close();
+
+        // page ở giữa không kịp xuống đĩa: mất record 300..426, các page sau vẫn còn
+        Path gap = copy(clean, dir.resolve("gap.rj"));
+        int gapFrom = 300, gapTo = 427;
+        patch(gap, H + gapFrom * R, new byte[(gapTo - gapFrom) * R]);
+        expect("lost page in the middle", gap, gapFrom, N - gapTo);
+        try (RoundJournal j = RoundJournal.open(gap)) {
+            write(j, gapFrom, 1);
+        }
+        expect("append after a lost page", gap, gapFrom + 1, 0);
+
+        Path flipped = copy(clean, dir.resolve("flipped.rj"));
+        patch(flipped, H + 200 * R + 17, new byte[] {0x55}); // 1 byte của stake
+        expect("flipped byte", flipped, 200, N - 200);
+
+        Path badCode = copy(clean, dir.resolve("code.rj"));
+        patch(badCode, H + 100 * R + 13, new byte[] {3}); // pred = 3
+        expect("impossible code", badCode, 100, N - 100);
+
+        Path cut = copy(clean, dir.resolve("cut.rj"));
+        try (FileChannel ch = FileChannel.open(cut, StandardOpenOption.WRITE)) {
+            ch.truncate(H + 400L * R + 10); // cắt giữa record 400
+        }
+        expect("file cut inside a record", cut, 400, 1);
+
+        Path magic = copy(clean, dir.resolve("magic.rj"));
+        patch(magic, 0, new byte[] {'X'});
+        rejected("wrong magic", magic);
+        Path version = copy(clean, dir.resolve("version.rj"));
+        patch(version, 4, new byte[] {(byte) (RoundJournal.VERSION + 1)});
+        rejected("unknown version", version);
+
+        predictors(dir, clean);
+    }
+
+    // 3 lần chạy trên cùng 1 journal: Markov, Keras, lại Markov; rồi gộp với journal không tên
+    private static void predictors(Path dir, Path unnamed) throws IOException {
+        Path named = dir.resolve("named.rj");
+        List<String> runs = List.of("MarkovPredictor", "KerasEngine", "MarkovPredictor");
+        for (String p : runs) {
+            try (RoundJournal j = RoundJournal.open(named)) {
+                j.setPredictor(p);
+                write(j, j.size(), 10);
+            }
+        }
+        expect("records of several predictors", named, 30, 0);
+
+        List<String> errors = new ArrayList<>();
+        RoundColumns cols = RoundColumns.load(List.of(named, unnamed));
+        List<String> want = List.of(RoundColumns.UNKNOWN, "MarkovPredictor", "KerasEngine");
+        if (!cols.predictors().equals(want)) {
+            errors.add("predictors " + cols.predictors() + ", expected " + want);
+        }
+        for (int i = 0; i < cols.size() && errors.size() < 3; i++) {
+            String p = i < 30 ? runs.get(i / 10) : RoundColumns.UNKNOWN;
+            if (!cols.predictor(i).equals(p)) {
+                errors.add("round " + i + " predictor " + cols.predictor(i) + ", expected " + p);
+            }
+        }
+        long[] perPredictor = new RoundAnalytics(cols).byPredictor().rounds;
+        long markov = 0, keras = 0, unknown = 0;
+        for (int k = 0; k < 6; k++) {
+            unknown += perPredictor[k];
+            markov += perPredictor[6 + k];
+            keras += perPredictor[12 + k];
+        }
+        if (unknown != N || markov != 20 || keras != 10) {
+            errors.add("byPredictor rounds " + unknown + "/" + markov + "/" + keras + ", expected " + N + "/20/10");
+        }
+        report("predictor names through RoundColumns", errors.isEmpty(),
+                errors.isEmpty() ? cols.size() + " rounds, " + cols.predictors() : String.join("; ", errors));
+
+        try (RoundJournal j = RoundJournal.open(dir.resolve("full.rj"))) {
+            for (int k = 0; k < RoundJournal.MAX_PREDICTORS; k++) {
+                j.setPredictor("P" + k);
+            }
+            try {
+                j.setPredictor("one too many");
+                report("full predictor header", false, "8th name accepted: " + j.getPredictors());
+            } catch (IOException e) {
+                report("full predictor header", true, e.getMessage());
+            }
+        }
+        try (RoundJournal j = RoundJournal.open(dir.resolve("long.rj"))) {
+            j.setPredictor(String.join("", Collections.nCopies(30, "ab")));
+            report("predictor name too long", false, "accepted");
+        } catch (IOException e) {
+            report("predictor name too long", true, e.getMessage());
+        }
+    }
+
+    // record i: đủ mọi giá trị mã hoá, đọc lại so được từng trường
+    private static void write(RoundJournal j, int from, int n) throws IOException {
+        for (int i = from; i < from + n; i++) {
+            j.append(1_700_000_000_000L + i, History.of(i * 7, i % 14),
+                    Bankroll.Pred.values()[i % 3], Bankroll.Actual.values()[i % 2], i % 4,
+                    i % 3 == 2 ? 0.0 : 3.0 * (i % 5 + 1), 0.5 * i);
+        }
+    }
+
+    private static void expect(String name, Path path, int records, int discarded) throws IOException {
+        List<String> errors = new ArrayList<>();
+        try (RoundJournal j = RoundJournal.open(path)) {
+            if (j.size() != records || j.getDiscarded() != discarded) {
+                errors.add("size=" + j.size() + " discarded=" + j.getDiscarded()
+                        + ", expected " + records + " / " + discarded);
+            }
+            int[] i = {0};
+            j.replay((atMs, bits, len, pred, actual, source, stake, pnl) -> {
+                int k = i[0]++;
+                if (atMs != 1_700_000_000_000L + k || bits != History.of(k * 7, k % 14).bits()
+                        || len != k % 14 || pred.ordinal() != k % 3
+                        || actual.ordinal() != k % 2 || source != k % 4 || pnl != 0.5 * k) {
+                    if (errors.size() < 3) {
+                        errors.add("record " + k + " differs");
+                    }
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            errors.add(e.toString());
+        }
+        report(name, errors.isEmpty(), errors.isEmpty() ? records + " records" : String.join("; ", errors));
+    }
+
+    private static void rejected(String name, Path path) {
+        try (RoundJournal j = RoundJournal.open(path)) {
+            report(name, false, "opened with " + j.size() + " records");
+        } catch (IOException e) {
+            report(name, true, e.getMessage());
+        }
+    }
+
+    private static void report(String name, boolean ok, String detail) {
+        if (!ok) {
+            failures++;
+        }
+        System.out.printf("%s %s: %s%n", ok ? "[OK]" : "[FAIL]", name, detail);
+    }
+
+    private static Path copy(Path from, Path to) throws IOException {
+        return Files.copy(from, to);
+    }
+
+    private static void patch(Path path, long at, byte[] bytes) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(bytes), at);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package controller;
+
+import java.util.Arrays;
+
+/**
+ * Decoded (prediction, actual) pairs of settled rounds, one byte each:
+ * bits 0-1 = {@link Bankroll.Pred} ordinal, bit 2 = actual is X.
+ *
+ * Filled once by a single writer ({@link #add}), then read by any number of
+ * threads; nothing is copied per reader.
+ */
+public final class RoundStream {
+
+    private static final Bankroll.Pred[] PREDS = Bankroll.Pred.values();
+
+    private byte[] codes = new byte[1 << 16];
+    private int size;
+
+    public void add(Bankroll.Pred pred, Bankroll.Actual actual) {
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, codes.length * 2);
+        }
+        codes[size++] = (byte) (pred.ordinal() | (actual == Bankroll.Actual.X ? 4 : 0));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Bankroll.Pred pred(int i) {
+        return PREDS[codes[i] & 3];
+    }
+
+    public Bankroll.Actual actual(int i) {
+        return (codes[i] & 4) != 0 ? Bankroll.Actual.X : Bankroll.Actual.T;
+    }
+
+    /** Plays every round through {@code b} in order. */
+    public void replay(Bankroll b) {
+        byte[] c = codes;
+        for (int i = 0, n = size; i < n; i++) {
+            int v = c[i];
+            b.onRound(PREDS[v & 3], (v & 4) != 0 ? Bankroll.Actual.X : Bankroll.Actual.T);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package controller;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Monte Carlo risk-of-ruin for a {@link Bankroll} setting.  Each path starts
+ * with {@code capital}, bets every round through a real Bankroll (so stake
+ * growth and cap resets follow exactly the live rules) and wins with
+ * probability {@code winProb}.  A path is ruined when it can no longer
+ * cover the next stake.
+ *
+ * Randomness is a SplitMix64 stream per path, seeded from (seed, path
+ * index) and kept in a local long: no RNG objects, nothing allocated per
+ * round.  Results are written into per-path arrays and aggregated after the
+ * parallel phase, so they are identical for any thread count.
+ */
+public final class RuinSimulator {
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private final double baseBet, multiplier;
+    private final Double stakeCap;
+    private final double capital, winProb;
+    private final int rounds;
+
+    public RuinSimulator(double baseBet, double multiplier, Double stakeCap,
+                         double capital, double winProb, int rounds) {
+        if (capital <= 0 || winProb < 0 || winProb > 1 || rounds <= 0) {
+            throw new IllegalArgumentException("capital>0, 0<=winProb<=1, rounds>0");
+        }
+        new Bankroll(baseBet, multiplier, stakeCap); // kiểm tra tham số sớm
+        this.baseBet = baseBet;
+        this.multiplier = multiplier;
+        this.stakeCap = stakeCap;
+        this.capital = capital;
+        this.winProb = winProb;
+        this.rounds = rounds;
+    }
+
+    public static final class Result {
+        public final int paths, rounds;
+        /** Round index at which each path was ruined, -1 if it survived. */
+        public final int[] ruinRound;
+        /** PnL of each path at ruin or at the horizon. */
+        public final double[] pnl;
+
+        Result(int paths, int rounds) {
+            this.paths = paths;
+            this.rounds = rounds;
+            this.ruinRound = new int[paths];
+            this.pnl = new double[paths];
+        }
+
+        public double riskOfRuin() {
+            long ruined = Arrays.stream(ruinRound).filter(r -> r >= 0).count();
+            return (double) ruined / paths;
+        }
+
+        public void print() {
+            int[] ruined = Arrays.stream(ruinRound).filter(r -> r >= 0).sorted().toArray();
+            double[] sorted = pnl.clone();
+            Arrays.sort(sorted);
+            System.out.printf("Risk of ruin: %.4f%% (%d/%d paths, horizon %d rounds)%n",
+                    riskOfRuin() * 100.0, ruined.length, paths, rounds);
+            if (ruined.length > 0) {
+                System.out.printf("Time to ruin: p10=%d p25=%d p50=%d p75=%d p90=%d max=%d%n",
+                        q(ruined, 0.10), q(ruined, 0.25), q(ruined, 0.50), q(ruined, 0.75), q(ruined, 0.90),
+                        ruined[ruined.length - 1]);
+                // phân bố theo 10 khoảng đều trên horizon
+                int[] buckets = new int[10];
+                for (int r : ruined) {
+                    buckets[(int) Math.min(9, (long) r * 10 / rounds)]++;
+                }
+                StringBuilder sb = new StringBuilder("Ruin by horizon decile:");
+                for (int b = 0; b < 10; b++) {
+                    sb.append(String.format(" %.2f%%", 100.0 * buckets[b] / paths));
+                }
+                System.out.println(sb);
+            }
+            System.out.printf("PnL: p1=%.2f p5=%.2f p25=%.2f p50=%.2f p75=%.2f p95=%.2f p99=%.2f mean=%.2f%n",
+                    q(sorted, 0.01), q(sorted, 0.05), q(sorted, 0.25), q(sorted, 0.50),
+                    q(sorted, 0.75), q(sorted, 0.95), q(sorted, 0.99), Arrays.stream(pnl).average().orElse(0));
+        }
+
+        private static int q(int[] sorted, double p) {
+            return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))];
+        }
+
+        private static double q(double[] sorted, double p) {
+            return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))];
+        }
+    }
+
+    /** Simulates {@code paths} independent paths on {@code threads} worker threads. */
+    public Result run(int paths, long seed, int threads) throws InterruptedException {
+        Result res = new Result(paths, rounds);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            pool.submit(() -> IntStream.range(0, paths).parallel().forEach(i -> simulate(i, seed, res))).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return res;
+    }
+
+    private void simulate(int path, long seed, Result res) {
+        // SplitMix64: trạng thái là 1 long, seed riêng cho từng path
+        long state = mix64(seed ^ mix64((path + 1) * GOLDEN));
+        // so sánh 53 bit ngẫu nhiên với ngưỡng, tránh chia số thực mỗi ván
+        long winBelow = (long) (winProb * (1L << 53));
+        Bankroll b = new Bankroll(baseBet, multiplier, stakeCap);
+        int ruinAt = -1;
+        for (int r = 0; r < rounds; r++) {
+            if (capital + b.getProfit() < b.getCurrentStake()) {
+                ruinAt = r;
+                break;
+            }
+            state += GOLDEN;
+            boolean win = (mix64(state) >>> 11) < winBelow;
+            b.onRound(Bankroll.Pred.TAI, win ? Bankroll.Actual.T : Bankroll.Actual.X);
+        }
+        res.ruinRound[path] = ruinAt;
+        res.pnl[path] = b.getProfit();
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,9 +1,65 @@
 package controller;
 
+import java.awt.AWTException;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import model.EnsemblePredictor;
+import model.KerasEngine;
+import model.LLM;
+import model.MarkovPredictor;
+import model.PredictionServer;
+import model.PredictionTable;
+import model.Predictor;
+import model.SocketPredictor;
+import view.Backtest;
+import view.MultiTable;
 import view.Statistic;
 
 public class Run {
+    private static final long ENSEMBLE_DEADLINE_MS = 200;
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("backtest")) {
+            backtest(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("sweep")) {
+            sweep(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("ruin")) {
+            ruin(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("multi")) {
+            multi(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("analytics")) {
+            analytics(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("scanbench")) {
+            scanbench(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("record")) {
+            record(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
         int rounds = 10;
         if (args.length > 0) {
             try {
@@ -12,7 +68,319 @@ public class Run {
                 System.err.println("Invalid round count, using default 10");
             }
         }
-        Statistic st = new Statistic(rounds);
+        String mode = (args.length > 1) ? args[1] : "python";
+        Statistic st = new Statistic(rounds, createPredictor(mode));
+        if (args.length > 2) {
+            // args[2] = file journal: khôi phục bankroll/thống kê rồi ghi tiếp
+            try {
+                st.attachJournal(RoundJournal.open(Path.of(args[2])));
+            } catch (IOException e) {
+                System.err.println("Cannot open journal " + args[2] + ": " + e.getMessage());
+                return;
+            }
+        }
+        // -Dsicbo.stopLoss=200:-150 : dừng khi PnL của 200 ván cược gần nhất < -150
+        String stop = System.getProperty("sicbo.stopLoss");
+        if (stop != null) {
+            String[] wl = stop.split(":");
+            int k = Arrays.stream(RollingStats.DEFAULT_WINDOWS).boxed().toList().indexOf(Integer.parseInt(wl[0]));
+            if (k < 0) {
+                System.err.println("sicbo.stopLoss window must be one of " + Arrays.toString(RollingStats.DEFAULT_WINDOWS));
+                return;
+            }
+            double limit = Double.parseDouble(wl[1]);
+            st.setStopLoss(r -> r.pnl(k) < limit);
+        }
         st.run();
     }
+
+    // backtest <file> [predictor]: chạy lại chuỗi kết quả đã ghi, không cần màn hình
+    private static void backtest(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: backtest <outcomes-file> [python|java|table|markov|ensemble[:a,b]]");
+            return;
+        }
+        try (Predictor predictor = createPredictor(args.length > 2 ? args[2] : "table")) {
+            Backtest bt = new Backtest(predictor);
+            bt.run(Path.of(args[1]));
+            bt.printSummary();
+        } catch (IOException e) {
+            System.err.println("Backtest failed: " + e.getMessage());
+        }
+    }
+
+    // sweep <file> [predictor] [baseBets] [multipliers] [caps]: lưới cấu hình Bankroll
+    // trên cùng 1 chuỗi (pred, actual) giải mã 1 lần qua Backtest
+    private static void sweep(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: sweep <outcomes-file> [python|java|table|markov|ensemble[:a,b]] [baseBets=1:10:1] [multipliers=1.5:3:0.1] [caps=none,50:500:50]");
+            return;
+        }
+        RoundStream stream = new RoundStream();
+        try (Predictor predictor = createPredictor(args.length > 2 ? args[2] : "table")) {
+            Backtest bt = new Backtest(predictor);
+            bt.recordRoundsTo(stream);
+            bt.run(Path.of(args[1]));
+        } catch (IOException e) {
+            System.err.println("Sweep failed: " + e.getMessage());
+            return;
+        }
+        double[] bases = BankrollSweep.parseGrid(args.length > 3 ? args[3] : "1:10:1");
+        double[] mults = BankrollSweep.parseGrid(args.length > 4 ? args[4] : "1.5:3:0.1");
+        Double[] caps = BankrollSweep.parseCaps(args.length > 5 ? args[5] : "none,50:500:50");
+        long t0 = System.nanoTime();
+        List<BankrollSweep.Result> ranked = BankrollSweep.run(stream, bases, mults, caps);
+        double secs = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("[INFO] sweep: %d configs x %d rounds in %.2fs on %d threads%n",
+                ranked.size(), stream.size(), secs, ForkJoinPool.getCommonPoolParallelism());
+        BankrollSweep.print(ranked, 30);
+    }
+
+    // ruin [key=value ...]: Monte Carlo xác suất cháy vốn với luật Bankroll
+    private static void ruin(String[] args) {
+        Map<String, String> opt = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            if (eq > 0) {
+                opt.put(args[i].substring(0, eq), args[i].substring(eq + 1));
+            }
+        }
+        String cap = opt.getOrDefault("cap", "none");
+        RuinSimulator sim = new RuinSimulator(
+                Double.parseDouble(opt.getOrDefault("baseBet", "3")),
+                Double.parseDouble(opt.getOrDefault("mult", "2")),
+                cap.equalsIgnoreCase("none") ? null : Double.valueOf(cap),
+                Double.parseDouble(opt.getOrDefault("capital", "1000")),
+                Double.parseDouble(opt.getOrDefault("p", "0.486")),   // Tài/Xỉu: 48.6% (bộ ba thua cả hai)
+                Integer.parseInt(opt.getOrDefault("rounds", "1000")));
+        int paths = Integer.parseInt(opt.getOrDefault("paths", "100000"));
+        long seed = Long.parseLong(opt.getOrDefault("seed", "42"));
+        int threads = Integer.parseInt(opt.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        try {
+            long t0 = System.nanoTime();
+            RuinSimulator.Result res = sim.run(paths, seed, threads);
+            double secs = (System.nanoTime() - t0) / 1e9;
+            System.out.printf("[INFO] %d paths x %d rounds, seed=%d, threads=%d in %.2fs%n",
+                    paths, res.rounds, seed, threads, secs);
+            res.print();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // multi <config.json> [rounds] [predictor]: nhiều bàn, 1 scanner + 1 predictor dùng chung
+    private static void multi(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: multi <tables.json> [rounds=10] [python|java|table|markov|ensemble[:a,b]]");
+            return;
+        }
+        try {
+            Path config = Path.of(args[1]);
+            List<TableRegion> regions = MultiTable.loadRegions(config);
+            int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+            new MultiTable(regions, MultiTable.loadJournals(config, regions), rounds,
+                    createPredictor(args.length > 3 ? args[3] : "table")).run();
+        } catch (IOException e) {
+            System.err.println("Cannot read table config: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // analytics <journal...> [query=all|hour|predictor|source|streak|pattern] [top=20] [minBets=30]
+    private static void analytics(String[] args) {
+        List<Path> files = new ArrayList<>();
+        Map<String, String> opt = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            if (eq > 0) {
+                opt.put(args[i].substring(0, eq), args[i].substring(eq + 1));
+            } else {
+                files.add(Path.of(args[i]));
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: analytics <journal> [journal...] [query=all|hour|predictor|source|streak|pattern] [top=20] [minBets=30]");
+            return;
+        }
+        RoundColumns cols;
+        long t0 = System.nanoTime();
+        try {
+            cols = RoundColumns.load(files);
+        } catch (IOException e) {
+            System.err.println("Cannot load journals: " + e.getMessage());
+            return;
+        }
+        System.out.printf("[INFO] loaded %d rounds from %d journal(s) in %.0fms%n",
+                cols.size(), files.size(), (System.nanoTime() - t0) / 1e6);
+
+        RoundAnalytics an = new RoundAnalytics(cols);
+        String q = opt.getOrDefault("query", "all");
+        t0 = System.nanoTime();
+        if (q.equals("all") || q.equals("hour")) {
+            RoundAnalytics.printByHour(an.byHour(ZoneId.systemDefault()));
+        }
+        if (q.equals("all") || q.equals("predictor")) {
+            RoundAnalytics.printByPredictor(an.byPredictor(), cols.predictors());
+        }
+        if (q.equals("all") || q.equals("source")) {
+            RoundAnalytics.printBySource(an.bySource());
+        }
+        if (q.equals("all") || q.equals("streak")) {
+            RoundAnalytics.printByStreak(an.byStreak());
+        }
+        if (q.equals("all") || q.equals("pattern")) {
+            RoundAnalytics.printByPattern(an.byPattern(),
+                    Integer.parseInt(opt.getOrDefault("top", "20")),
+                    Integer.parseInt(opt.getOrDefault("minBets", "30")));
+        }
+        System.out.printf("[INFO] query %s in %.0fms on %d threads%n",
+                q, (System.nanoTime() - t0) / 1e6, ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    // scanbench [source=synthetic|<frames.sbf>] [seconds=10] [roundFrames=50] [noise=6] [scale=1.0] [brightness=0.15] [seed=42]
+    // chạy scanner hết tốc lực trên nguồn frame không cần màn hình
+    private static void scanbench(String[] args) {
+        Map<String, String> opt = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            if (eq > 0) {
+                opt.put(args[i].substring(0, eq), args[i].substring(eq + 1));
+            }
+        }
+        String src = opt.getOrDefault("source", "synthetic");
+        long millis = (long) (Double.parseDouble(opt.getOrDefault("seconds", "10")) * 1000);
+        try {
+            FrameSource frames;
+            TableRegion region;
+            if (src.equals("synthetic")) {
+                region = new TableRegion("synthetic", new Point(100, 200), new Point(580, 200));
+                frames = new SyntheticFrameSource(List.of(region),
+                        Integer.parseInt(opt.getOrDefault("roundFrames", "50")),
+                        Integer.parseInt(opt.getOrDefault("noise", "6")),
+                        Double.parseDouble(opt.getOrDefault("scale", "1.0")),
+                        Double.parseDouble(opt.getOrDefault("brightness", "0.15")),
+                        Long.parseLong(opt.getOrDefault("seed", "42")));
+            } else {
+                RecordedFrameSource rec = RecordedFrameSource.open(Path.of(src));
+                System.out.printf("[INFO] %s: %d frames%n", src, rec.getFrames());
+                region = rec.getRegion();
+                frames = rec;
+            }
+            ScanThroughput.run(frames, region, millis).print();
+            if (Metrics.ENABLED) System.out.println(Metrics.dump());
+        } catch (IOException e) {
+            System.err.println("Cannot open frames: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // record <out.sbf> <frames|png-dir> <x1,y1> <x2,y2> [periodMs=200]: ghi frame ROI thật (hoặc gói thư mục PNG)
+    private static void record(String[] args) {
+        if (args.length < 5) {
+            System.err.println("Usage: record <out.sbf> <frames|png-dir> <firstX,firstY> <lastX,lastY> [periodMs=200]");
+            return;
+        }
+        TableRegion region = new TableRegion("recorded", parsePoint(args[3]), parsePoint(args[4]));
+        Path out = Path.of(args[1]);
+        try {
+            int n;
+            if (Files.isDirectory(Path.of(args[2]))) {
+                n = RecordedFrameSource.pack(Path.of(args[2]), region, out);
+            } else {
+                try (FrameSource screen = new RobotFrameSource()) {
+                    n = RecordedFrameSource.record(screen, region, Integer.parseInt(args[2]),
+                            args.length > 5 ? Long.parseLong(args[5]) : 200, out);
+                }
+            }
+            System.out.printf("[INFO] %d frames of %s -> %s%n", n, region.roi(), out);
+        } catch (IOException | AWTException e) {
+            System.err.println("Record failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // serve <socket> [predictor=table] [maxBatch=1024]: 1 model nạp sẵn cho mọi process trên máy (client: uds:<socket>)
+    private static void serve(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: serve <socket-path> [python|java|table|markov|ensemble[:a,b]] [maxBatch=1024]");
+            return;
+        }
+        Predictor predictor = createPredictor(args.length > 2 ? args[2] : "table");
+        predictor.warmUp();
+        try {
+            PredictionServer server = PredictionServer.start(predictor, Path.of(args[1]),
+                    args.length > 3 ? Integer.parseInt(args[3]) : PredictionServer.DEFAULT_MAX_BATCH);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                predictor.close();
+                System.out.println("[INFO] prediction server stopped: " + server.stats());
+            }));
+            System.out.println("[INFO] serving " + predictor.getClass().getSimpleName() + " on " + server.getPath());
+            server.join();
+        } catch (IOException e) {
+            System.err.println("Cannot start prediction server: " + e.getMessage());
+            predictor.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Point parsePoint(String s) {
+        String[] xy = s.split(",");
+        return new Point(Integer.parseInt(xy[0].trim()), Integer.parseInt(xy[1].trim()));
+    }
+
+    // python = predict.py (worker), java = KerasEngine (không cần Python/TF),
+    // table = bảng 2^13 kèo tính sẵn từ model (cache cạnh file .keras),
+    // markov = n-gram học online từ chính bàn đang chơi,
+    // ensemble[:a,b,..] = các predictor trên chạy song song, deadline 200ms, bỏ phiếu,
+    // uds:<socket> = hỏi PredictionServer (Run serve) đang chạy trên cùng máy
+    static Predictor createPredictor(String mode) {
+        if (mode.startsWith("uds:")) {
+            return new SocketPredictor(Path.of(mode.substring(4)));
+        }
+        if (mode.startsWith("ensemble")) {
+            // ensemble[:m1,m2,...] : hỏi song song, deadline 200ms, bỏ phiếu (mặc định table + markov)
+            String spec = mode.contains(":") ? mode.substring(mode.indexOf(':') + 1) : "table,markov";
+            List<Predictor> members = new ArrayList<>();
+            for (String m : spec.split(",")) {
+                members.add(createPredictor(m.trim()));
+            }
+            return new EnsemblePredictor(members, ENSEMBLE_DEADLINE_MS);
+        }
+        switch (mode) {
+            case "table":
+                Predictor source = createPredictor("java");
+                try {
+                    long t0 = System.currentTimeMillis();
+                    PredictionTable table = PredictionTable.loadOrBuild(source, KerasEngine.DEFAULT_MODEL, 13);
+                    System.out.println("[INFO] prediction table ready in " + (System.currentTimeMillis() - t0) + "ms");
+                    return table;
+                } catch (IOException e) {
+                    System.err.println("Cannot build prediction table (" + e.getMessage() + "), using " + source.getClass().getSimpleName());
+                    return source;
+                } finally {
+                    if (!(source instanceof KerasEngine)) {
+                        source.close();
+                    }
+                }
+            case "java":
+                try {
+                    return new KerasEngine();
+                } catch (IOException e) {
+                    System.err.println("Cannot load Keras model (" + e.getMessage() + "), using python");
+                    return new LLM();
+                }
+            case "python":
+                return new LLM();
+            case "markov":
+                return new MarkovPredictor();
+            default:
+                System.err.println("Unknown predictor '" + mode + "', using python");
+                return new LLM();
+        }
+    }
 }
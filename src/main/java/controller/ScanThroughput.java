@@ -0,0 +1,104 @@
+package controller;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Drives one {@link DotScannerService} as fast as it goes (period 0) on a
+ * {@link FrameSource}, for frames per second without a display.
+ *
+ * With a {@link SyntheticFrameSource} the source knows what every frame
+ * shows and when it was drawn, so each published history is also checked
+ * against the truth (misreads) and timed from the moment the new strip was
+ * drawn to the listener call (close-detection latency: capture, fingerprint,
+ * sampling, publish).
+ */
+public final class ScanThroughput {
+
+    public static final class Result {
+        public final long frames, changes, misreads, rounds;
+        public final long skips, misses;    // fingerprint trùng (bỏ qua) / đổi (sample lại)
+        public final double seconds;
+        public final LatencyHistogram latency;
+
+        Result(long frames, long changes, long misreads, long rounds, long skips, long misses,
+               double seconds, LatencyHistogram latency) {
+            this.frames = frames;
+            this.changes = changes;
+            this.misreads = misreads;
+            this.rounds = rounds;
+            this.skips = skips;
+            this.misses = misses;
+            this.seconds = seconds;
+            this.latency = latency;
+        }
+
+        public void print() {
+            System.out.printf("Scan: frames=%d in %.2fs (%.0f frames/s), history changes=%d%n",
+                    frames, seconds, frames / seconds, changes);
+            System.out.printf("Fingerprint: %d unchanged (skipped), %d sampled%n", skips, misses);
+            if (latency.getCount() > 0) {
+                System.out.printf("Truth: rounds closed=%d, detected=%d, misreads=%d%n",
+                        rounds, latency.getCount(), misreads);
+                System.out.println("Close-detection latency: " + latency.compact());
+            }
+        }
+    }
+
+    private ScanThroughput() {
+    }
+
+    public static Result run(FrameSource src, TableRegion region, long millis) throws InterruptedException {
+        Counting counted = new Counting(src);
+        SyntheticFrameSource synthetic = (src instanceof SyntheticFrameSource s) ? s : null;
+        LatencyHistogram latency = new LatencyHistogram("closeDetect");
+        long[] changes = new long[1], misreads = new long[1];
+        // strip vẽ sẵn lúc tạo source không tính là 1 lần đóng ván
+        long[] lastDrawn = {synthetic == null ? -1L : synthetic.changedAtNs(0)};
+
+        DotScannerService scanner = new DotScannerService(region.first(), region.last(), 1.0, 0, counted);
+        // listener chạy trên thread scanner, cùng thread với capture -> đọc truth không cần khoá
+        scanner.addListener((h, atMs) -> {
+            changes[0]++;
+            if (synthetic == null) {
+                return;
+            }
+            if (h.bits() != synthetic.truthBits(0)) {
+                misreads[0]++;
+            } else if (synthetic.changedAtNs(0) != lastDrawn[0]) {
+                lastDrawn[0] = synthetic.changedAtNs(0);
+                latency.since(lastDrawn[0]);
+            }
+        });
+        long t0 = System.nanoTime();
+        scanner.start();
+        Thread.sleep(millis);
+        scanner.stop();
+        scanner.join(10_000);
+        double secs = (System.nanoTime() - t0) / 1e9;
+        return new Result(counted.frames, changes[0], misreads[0],
+                synthetic == null ? 0 : synthetic.rounds(), scanner.getFrameSkips(), scanner.getFrameMisses(),
+                secs, latency);
+    }
+
+    // đếm số lần chụp (gồm cả lần chụp ROI đầy đủ để hiệu chỉnh)
+    private static final class Counting implements FrameSource {
+        final FrameSource src;
+        long frames;
+
+        Counting(FrameSource src) {
+            this.src = src;
+        }
+
+        @Override
+        public BufferedImage capture(Rectangle r) {
+            frames++;
+            return src.capture(r);
+        }
+
+        @Override
+        public void close() {
+            src.close();
+        }
+    }
+}
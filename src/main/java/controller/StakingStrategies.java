@@ -0,0 +1,267 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shadow evaluation of many staking strategies on the real bet sequence.
+ *
+ * Every strategy follows the same picks as the live session (SKIP = no
+ * bet for everybody) and only sizes its stake differently, so after any
+ * number of rounds their PnL and drawdown are directly comparable.  None of
+ * them touches the live {@link Bankroll}.
+ *
+ * State is kept as parallel primitive arrays, one slot per strategy, so a
+ * settled round is one loop over plain arrays:
+ * <ul>
+ *   <li>MARTINGALE: x mult after a loss, back to base on a win or above the cap</li>
+ *   <li>DALEMBERT: +unit after a loss, -unit after a win (never under base)</li>
+ *   <li>FIBONACCI: one step up the sequence after a loss, two steps down after a win</li>
+ *   <li>FIXED_FRACTION: a fixed fraction of the current capital</li>
+ *   <li>KELLY: fraction x (2p - 1) of the capital, p = smoothed win rate of
+ *       the bets so far; sits out while the edge is not positive</li>
+ * </ul>
+ * Every stake is clamped to the table limit (compounding strategies would
+ * otherwise grow without bound over a long backtest).  A strategy is
+ * ruined when capital + PnL can no longer cover its next stake; it stops
+ * betting from then on.  Payout is even money, as in {@link Bankroll}.
+ *
+ * Not thread-safe: updated and read from the thread that settles rounds.
+ */
+public final class StakingStrategies {
+
+    public static final int MARTINGALE = 0, DALEMBERT = 1, FIBONACCI = 2, FIXED_FRACTION = 3, KELLY = 4;
+
+    // Laplace prior của Kelly: coi như đã có PRIOR thắng + PRIOR thua trước ván đầu
+    private static final double KELLY_PRIOR = 20;
+    private static final double[] FIB = new double[48];
+
+    static {
+        FIB[0] = 1;
+        FIB[1] = 1;
+        for (int i = 2; i < FIB.length; i++) {
+            FIB[i] = FIB[i - 1] + FIB[i - 2];
+        }
+    }
+
+    private final int n;
+    private final String[] label;
+    private final int[] kind;
+    private final double[] base, param, cap;   // ý nghĩa param theo kind: mult / unit / - / fraction / kelly fraction
+    private final double capital, tableMax;
+    // ===== TRẠNG THÁI (SoA) =====
+    private final double[] stake, profit, peak, maxDrawdown, maxStake;
+    private final int[] step, losing, longestLosing;
+    private final boolean[] ruined;
+    private long bets, wins;
+
+    private StakingStrategies(List<Spec> specs, double capital, double tableMax) {
+        if (specs.isEmpty() || capital <= 0 || tableMax <= 0) {
+            throw new IllegalArgumentException("at least one strategy, capital > 0, tableMax > 0");
+        }
+        this.n = specs.size();
+        this.capital = capital;
+        this.tableMax = tableMax;
+        label = new String[n];
+        kind = new int[n];
+        base = new double[n];
+        param = new double[n];
+        cap = new double[n];
+        stake = new double[n];
+        profit = new double[n];
+        peak = new double[n];
+        maxDrawdown = new double[n];
+        maxStake = new double[n];
+        step = new int[n];
+        losing = new int[n];
+        longestLosing = new int[n];
+        ruined = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            Spec s = specs.get(i);
+            label[i] = s.label;
+            kind[i] = s.kind;
+            base[i] = s.base;
+            param[i] = s.param;
+            cap[i] = s.cap;
+            stake[i] = initialStake(i);
+        }
+    }
+
+    /** Một cấu hình; cap = +inf khi không giới hạn. */
+    public record Spec(String label, int kind, double base, double param, double cap) {
+    }
+
+    public static Spec martingale(double base, double mult, Double cap) {
+        if (base <= 0 || mult <= 1.0) throw new IllegalArgumentException("base>0, mult>1");
+        return new Spec(String.format("martingale x%.1f cap=%s", mult, cap == null ? "none" : String.format("%.0f", cap)),
+                MARTINGALE, base, mult, cap == null ? Double.POSITIVE_INFINITY : cap);
+    }
+
+    public static Spec dalembert(double base, double unit) {
+        if (base <= 0 || unit <= 0) throw new IllegalArgumentException("base>0, unit>0");
+        return new Spec(String.format("dalembert unit=%.1f", unit), DALEMBERT, base, unit, Double.POSITIVE_INFINITY);
+    }
+
+    public static Spec fibonacci(double base) {
+        if (base <= 0) throw new IllegalArgumentException("base>0");
+        return new Spec(String.format("fibonacci base=%.1f", base), FIBONACCI, base, 0, Double.POSITIVE_INFINITY);
+    }
+
+    /** {@code minStake}: không cược ít hơn mức này (bàn có cược tối thiểu). */
+    public static Spec fixedFraction(double minStake, double fraction) {
+        if (minStake <= 0 || fraction <= 0 || fraction >= 1) throw new IllegalArgumentException("minStake>0, 0<fraction<1");
+        return new Spec(String.format("fraction %.1f%%", fraction * 100), FIXED_FRACTION, minStake, fraction, Double.POSITIVE_INFINITY);
+    }
+
+    public static Spec kelly(double minStake, double kellyFraction) {
+        if (minStake <= 0 || kellyFraction <= 0 || kellyFraction > 1) throw new IllegalArgumentException("minStake>0, 0<kellyFraction<=1");
+        return new Spec(String.format("kelly x%.2f", kellyFraction), KELLY, minStake, kellyFraction, Double.POSITIVE_INFINITY);
+    }
+
+    public static StakingStrategies of(List<Spec> specs, double capital, double tableMax) {
+        return new StakingStrategies(specs, capital, tableMax);
+    }
+
+    /** The usual grid around the live setting: martingale variants plus every other family. */
+    public static StakingStrategies defaults(double baseBet, double capital, double tableMax) {
+        List<Spec> s = new ArrayList<>();
+        for (double mult : new double[]{1.5, 2.0, 2.5, 3.0}) {
+            s.add(martingale(baseBet, mult, null));
+            s.add(martingale(baseBet, mult, baseBet * 32));
+            s.add(martingale(baseBet, mult, baseBet * 128));
+        }
+        for (double unit : new double[]{0.5, 1.0, 2.0}) {
+            s.add(dalembert(baseBet, baseBet * unit));
+        }
+        s.add(fibonacci(baseBet));
+        s.add(fibonacci(baseBet * 2));
+        for (double f : new double[]{0.005, 0.01, 0.02, 0.05}) {
+            s.add(fixedFraction(baseBet, f));
+        }
+        for (double k : new double[]{0.25, 0.5, 1.0}) {
+            s.add(kelly(baseBet, k));
+        }
+        return new StakingStrategies(s, capital, tableMax);
+    }
+
+    /** Một ván đã settle; {@code bet} = false khi live SKIP. */
+    public void onRound(boolean bet, boolean won) {
+        if (!bet) {
+            return;
+        }
+        bets++;
+        if (won) wins++;
+        // ước lượng p dùng chung cho mọi Kelly, tính 1 lần / ván
+        double edge = 2 * (wins + KELLY_PRIOR) / (bets + 2 * KELLY_PRIOR) - 1;
+        double sign = won ? 1.0 : -1.0;
+        for (int i = 0; i < n; i++) {
+            if (ruined[i]) {
+                continue;
+            }
+            double s = stake[i];
+            double p = profit[i] + sign * s;
+            profit[i] = p;
+            if (p > peak[i]) peak[i] = p;
+            double dd = peak[i] - p;
+            if (dd > maxDrawdown[i]) maxDrawdown[i] = dd;
+            if (s > 0) {
+                int l = won ? 0 : losing[i] + 1;
+                losing[i] = l;
+                if (l > longestLosing[i]) longestLosing[i] = l;
+            }
+
+            double b = base[i], next;
+            switch (kind[i]) {
+                case MARTINGALE -> {
+                    next = won ? b : s * param[i];
+                    if (next > cap[i]) next = b;
+                }
+                case DALEMBERT -> next = won ? Math.max(b, s - param[i]) : s + param[i];
+                case FIBONACCI -> {
+                    int k = won ? Math.max(0, step[i] - 2) : Math.min(FIB.length - 1, step[i] + 1);
+                    step[i] = k;
+                    next = b * FIB[k];
+                }
+                case FIXED_FRACTION -> next = Math.max(b, (capital + p) * param[i]);
+                default -> next = edge > 0 ? Math.max(b, (capital + p) * edge * param[i]) : 0.0; // KELLY
+            }
+            if (next > tableMax) next = tableMax;
+            if (capital + p < next) {
+                ruined[i] = true;
+                next = 0.0;
+            }
+            stake[i] = next;
+            if (next > maxStake[i]) maxStake[i] = next;
+        }
+    }
+
+    private double initialStake(int i) {
+        return switch (kind[i]) {
+            case FIXED_FRACTION -> Math.min(tableMax, Math.max(base[i], capital * param[i]));
+            case KELLY -> 0.0; // chưa có lợi thế nào được chứng minh
+            default -> base[i];
+        };
+    }
+
+    // ===== ĐỌC =====
+    public int size() {
+        return n;
+    }
+
+    public String label(int i) {
+        return label[i];
+    }
+
+    public double profit(int i) {
+        return profit[i];
+    }
+
+    public double maxDrawdown(int i) {
+        return maxDrawdown[i];
+    }
+
+    public boolean isRuined(int i) {
+        return ruined[i];
+    }
+
+    /** Strategy indices, best PnL first (ties: smaller drawdown). */
+    public int[] ranked() {
+        Integer[] idx = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            idx[i] = i;
+        }
+        Arrays.sort(idx, (a, b) -> profit[a] != profit[b]
+                ? Double.compare(profit[b], profit[a]) : Double.compare(maxDrawdown[a], maxDrawdown[b]));
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = idx[i];
+        }
+        return out;
+    }
+
+    /** "1.kelly x0.25 +12.00/mdd 30.00 | 2...." : top {@code k}, 1 dòng. */
+    public String compact(int k) {
+        int[] r = ranked();
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < Math.min(k, n); j++) {
+            int i = r[j];
+            sb.append(j == 0 ? "" : " | ").append(j + 1).append('.').append(label[i])
+                    .append(String.format(" %+.2f/mdd %.2f", profit[i], maxDrawdown[i]))
+                    .append(ruined[i] ? " RUINED" : "");
+        }
+        return sb.toString();
+    }
+
+    public void print() {
+        System.out.printf("Shadow staking (%d strategies, capital %.0f, table max %.0f, %d bets, win rate %.2f%%):%n",
+                n, capital, tableMax, bets, bets == 0 ? 0.0 : 100.0 * wins / bets);
+        System.out.printf("%4s %-26s %12s %10s %10s %8s %s%n", "#", "strategy", "PnL", "MDD", "maxStake", "longestL", "");
+        int[] r = ranked();
+        for (int j = 0; j < n; j++) {
+            int i = r[j];
+            System.out.printf("%4d %-26s %12.2f %10.2f %10.2f %8d %s%n", j + 1, label[i], profit[i], maxDrawdown[i],
+                    maxStake[i], longestLosing[i], ruined[i] ? "RUINED" : "");
+        }
+    }
+}
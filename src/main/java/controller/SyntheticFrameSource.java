@@ -0,0 +1,166 @@
+package controller;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.List;
+
+/**
+ * Draws 13-dot history strips for one or more {@link TableRegion}s, so the
+ * scan pipeline can run on a machine without a display.
+ *
+ * Each table plays its own random T/X sequence.  Every {@code roundFrames}
+ * captures a table closes a round: its window shifts by one outcome and its
+ * ROI is redrawn (table k is offset by k/n of a round, so tables do not all
+ * change on the same frame).  Between closes the pixels do not change, the
+ * same as a real table while a round is in progress.
+ *
+ * Every redraw varies, to stress the sampler:
+ * <ul>
+ *   <li>{@code noise}: fixed per-pixel noise of +-noise grey levels</li>
+ *   <li>{@code scale}: dot radius = 12 px x scale</li>
+ *   <li>{@code brightness}: global gain drawn from [1-b, 1+b]</li>
+ * </ul>
+ * T dots are dark, X dots bright, both against a mid-green background.
+ *
+ * {@link #truthBits} and {@link #changedAtNs} give what the scanner should
+ * read and when it became visible, for latency and accuracy checks.
+ */
+public final class SyntheticFrameSource implements FrameSource {
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final int BACKGROUND = 0x1E6E3C, DOT_T = 0x14143C, DOT_X = 0xF0F0F0;
+    private static final int DOT_RADIUS = 12;
+    private static final int MASK = (1 << TableRegion.NUM_DOTS) - 1;
+
+    private final List<TableRegion> regions;
+    private final int roundFrames, noise;
+    private final double radius, brightness;
+    private final Rectangle canvasBounds;
+    private final BufferedImage canvas;
+    private final int[] px;
+    private final int[] bits;
+    private final long[] changedAtNs;
+    private long rng;
+    private long frames, rounds;
+
+    public SyntheticFrameSource(List<TableRegion> regions, int roundFrames, int noise,
+                                double scale, double brightness, long seed) {
+        if (regions.isEmpty() || roundFrames <= 0 || noise < 0 || scale <= 0 || brightness < 0 || brightness >= 1) {
+            throw new IllegalArgumentException("regions, roundFrames>0, noise>=0, scale>0, 0<=brightness<1");
+        }
+        this.regions = List.copyOf(regions);
+        this.roundFrames = roundFrames;
+        this.noise = noise;
+        this.radius = DOT_RADIUS * scale;
+        this.brightness = brightness;
+        this.rng = seed;
+
+        Rectangle b = null;
+        for (TableRegion r : this.regions) {
+            b = (b == null) ? r.roi() : b.union(r.roi());
+        }
+        this.canvasBounds = b;
+        this.canvas = new BufferedImage(b.width, b.height, BufferedImage.TYPE_INT_RGB);
+        this.px = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+        int n = this.regions.size();
+        this.bits = new int[n];
+        this.changedAtNs = new long[n];
+        for (int k = 0; k < n; k++) {
+            bits[k] = (int) (next() & MASK);
+            render(k);
+            changedAtNs[k] = System.nanoTime();
+        }
+    }
+
+    public Rectangle getBounds() {
+        return new Rectangle(canvasBounds);
+    }
+
+    /** What table {@code k} shows now (History bits: first dot highest, T = 1). */
+    public int truthBits(int k) {
+        return bits[k];
+    }
+
+    /** System.nanoTime when table {@code k}'s current strip was drawn. */
+    public long changedAtNs(int k) {
+        return changedAtNs[k];
+    }
+
+    public long frames() {
+        return frames;
+    }
+
+    public long rounds() {
+        return rounds;
+    }
+
+    @Override
+    public BufferedImage capture(Rectangle r) {
+        int n = regions.size();
+        for (int k = 0; k < n; k++) {
+            if ((frames + (long) k * roundFrames / n) % roundFrames == roundFrames - 1) {
+                bits[k] = ((bits[k] << 1) | (int) (next() & 1)) & MASK;
+                render(k);
+                changedAtNs[k] = System.nanoTime();
+                rounds++;
+            }
+        }
+        frames++;
+        if (!canvasBounds.contains(r)) {
+            throw new IllegalArgumentException("capture " + r + " outside synthetic canvas " + canvasBounds);
+        }
+        return canvas.getSubimage(r.x - canvasBounds.x, r.y - canvasBounds.y, r.width, r.height);
+    }
+
+    // vẽ lại ROI của bàn k: nền + 13 chấm, nhân hệ số sáng, cộng nhiễu cố định
+    private void render(int k) {
+        TableRegion region = regions.get(k);
+        Rectangle roi = region.roi();
+        int[] cx = region.centersX(canvasBounds);
+        int cy = region.centerY(canvasBounds);
+        double gain = 1.0 + brightness * ((next() >>> 11) * 0x1.0p-53 * 2 - 1);
+        long noiseSeed = next();
+        double r2 = radius * radius;
+        int w = canvasBounds.width;
+        int x0 = roi.x - canvasBounds.x, y0 = roi.y - canvasBounds.y;
+        for (int y = y0; y < y0 + roi.height; y++) {
+            for (int x = x0; x < x0 + roi.width; x++) {
+                int color = BACKGROUND;
+                // pixel nằm trong chấm nào (nếu có)
+                int dy = y - cy;
+                for (int i = 0; i < cx.length; i++) {
+                    int dx = x - cx[i];
+                    if ((double) dx * dx + (double) dy * dy <= r2) {
+                        color = ((bits[k] >> (cx.length - 1 - i)) & 1) != 0 ? DOT_T : DOT_X;
+                        break;
+                    }
+                }
+                int d = noise == 0 ? 0 : (int) Long.remainderUnsigned(mix64(noiseSeed + (long) y * w + x), 2L * noise + 1) - noise;
+                px[y * w + x] = shade(color, gain, d);
+            }
+        }
+    }
+
+    private static int shade(int rgb, double gain, int d) {
+        int r = clamp((int) (((rgb >> 16) & 255) * gain) + d);
+        int g = clamp((int) (((rgb >> 8) & 255) * gain) + d);
+        int b = clamp((int) ((rgb & 255) * gain) + d);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static int clamp(int v) {
+        return Math.max(0, Math.min(255, v));
+    }
+
+    private long next() {
+        rng += GOLDEN;
+        return mix64(rng);
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
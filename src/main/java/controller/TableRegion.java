@@ -0,0 +1,41 @@
+package controller;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+/**
+ * One table on screen: the centres of its first and last history dots.
+ * The 13 dots are evenly spaced between them; the capture ROI is the dot
+ * row plus a margin.
+ */
+public record TableRegion(String name, Point first, Point last) {
+
+    public static final int NUM_DOTS = 13;
+    public static final int PATCH = 8;
+    public static final int MARGIN_X = 20, MARGIN_Y = 20;
+
+    /** Screen rectangle to capture for this table. */
+    public Rectangle roi() {
+        int minX = (int) Math.floor(Math.min(first.x, last.x) - MARGIN_X - PATCH);
+        int maxX = (int) Math.ceil(Math.max(first.x, last.x) + MARGIN_X + PATCH);
+        int minY = first.y - (MARGIN_Y + PATCH);
+        int maxY = first.y + (MARGIN_Y + PATCH);
+        return new Rectangle(minX, minY,
+                Math.max(10, maxX - minX + 1),
+                Math.max(10, maxY - minY + 1));
+    }
+
+    /** Dot centre x in the coordinates of an image captured at {@code origin}. */
+    public int[] centersX(Rectangle origin) {
+        double dx = (last.x - first.x) / (double) (NUM_DOTS - 1);
+        int[] cx = new int[NUM_DOTS];
+        for (int i = 0; i < NUM_DOTS; i++) {
+            cx[i] = (int) Math.round(first.x + i * dx) - origin.x;
+        }
+        return cx;
+    }
+
+    public int centerY(Rectangle origin) {
+        return first.y - origin.y;
+    }
+}
@@ -0,0 +1,221 @@
+package model;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Several predictors asked at once, with one deadline per decision.
+ *
+ * Every member runs on a small dedicated pool (one thread per member) and
+ * is waited for until the deadline, in-process members included, so the
+ * whole decision fits in the budget.  Whatever has not answered by then is
+ * cancelled and abstains.  The pick is a weighted vote between TAI and XIU;
+ * SKIP answers abstain, and a tie or no votes is SKIP.
+ *
+ * A member whose previous call is still running (a cancelled call that has
+ * not returned yet) is not queued behind itself: it abstains for this
+ * decision and counts as late.  There is therefore at most one task per
+ * member in the pool, and a stuck member costs its own vote only until it
+ * returns ({@link LLM} answers interrupts and its own deadline).  There is
+ * never a second sequential call: the ensemble itself reports
+ * {@code canStall() == false} and {@code retryOnSkip() == false}.
+ */
+public class EnsemblePredictor implements Predictor {
+
+    private final Predictor[] members;
+    private final double[] weights;
+    private final long deadlineNanos;
+    private final ThreadPoolExecutor pool;
+    private final AtomicBoolean[] busy;      // member còn 1 lần gọi chưa trả về
+    private final LongAdder late = new LongAdder();
+    private final LongAdder decisions = new LongAdder();
+
+    public EnsemblePredictor(List<Predictor> members, long deadlineMs) {
+        this(members, null, deadlineMs);
+    }
+
+    /** {@code weights} null = 1 per member. */
+    public EnsemblePredictor(List<Predictor> members, double[] weights, long deadlineMs) {
+        if (members.isEmpty() || deadlineMs <= 0 || (weights != null && weights.length != members.size())) {
+            throw new IllegalArgumentException("members non-empty, deadlineMs > 0, one weight per member");
+        }
+        this.members = members.toArray(new Predictor[0]);
+        int n = this.members.length;
+        this.weights = new double[n];
+        this.busy = new AtomicBoolean[n];
+        for (int i = 0; i < n; i++) {
+            this.weights[i] = weights == null ? 1.0 : weights[i];
+            this.busy[i] = new AtomicBoolean();
+        }
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        AtomicInteger seq = new AtomicInteger();
+        // tối đa 1 task / member (cờ busy) -> hàng đợi n chỗ không bao giờ đầy
+        this.pool = new ThreadPoolExecutor(n, n, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(n), r -> {
+                    Thread t = new Thread(r, "ensemble-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public int pick(History history) {
+        decisions.increment();
+        long deadline = System.nanoTime() + deadlineNanos;
+        int n = members.length;
+        Future<?>[] pending = new Future<?>[n];
+        int[] picks = new int[n];
+        for (int i = 0; i < n; i++) {
+            picks[i] = Picks.SKIP;
+            if (!busy[i].compareAndSet(false, true)) {
+                late.increment(); // member vẫn kẹt từ lần trước
+                continue;
+            }
+            Call call = new Call(members[i], history, busy[i]);
+            try {
+                pool.execute(call);
+                pending[i] = call;
+            } catch (RejectedExecutionException e) {
+                busy[i].set(false); // pool đã shutdown
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (pending[i] == null) {
+                continue;
+            }
+            try {
+                long left = deadline - System.nanoTime();
+                picks[i] = (Integer) pending[i].get(Math.max(0, left), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                late.increment();
+                pending[i].cancel(true);
+            } catch (ExecutionException e) {
+                // lỗi = bỏ phiếu trắng
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Future<?> f : pending) {
+                    if (f != null) {
+                        f.cancel(true);
+                    }
+                }
+                return Picks.SKIP;
+            }
+        }
+        return vote(picks);
+    }
+
+    /**
+     * One member call.  The busy flag is released when the call returns, or,
+     * if it is cancelled while still queued, when it is cancelled: the
+     * callable then never runs, so its own {@code finally} cannot do it.
+     */
+    private static final class Call extends FutureTask<Integer> {
+        private static final int QUEUED = 0, RUNNING = 1, DROPPED = 2;
+        private final AtomicInteger state;
+        private final AtomicBoolean busy;
+
+        Call(Predictor member, History history, AtomicBoolean busy) {
+            this(new AtomicInteger(QUEUED), member, history, busy);
+        }
+
+        private Call(AtomicInteger state, Predictor member, History history, AtomicBoolean busy) {
+            super(() -> {
+                if (!state.compareAndSet(QUEUED, RUNNING)) {
+                    return Picks.SKIP;
+                }
+                try {
+                    return Picks.index(member.getAnswer(history));
+                } finally {
+                    busy.set(false);
+                }
+            });
+            this.state = state;
+            this.busy = busy;
+        }
+
+        @Override
+        protected void done() {
+            // huỷ khi còn trong hàng đợi; đang chạy thì finally ở trên trả cờ khi member thật sự xong
+            if (state.compareAndSet(QUEUED, DROPPED)) {
+                busy.set(false);
+            }
+        }
+    }
+
+    private int vote(int[] picks) {
+        double tai = 0, xiu = 0;
+        for (int i = 0; i < picks.length; i++) {
+            if (picks[i] == Picks.TAI) {
+                tai += weights[i];
+            } else if (picks[i] == Picks.XIU) {
+                xiu += weights[i];
+            }
+        }
+        return tai > xiu ? Picks.TAI : (xiu > tai ? Picks.XIU : Picks.SKIP);
+    }
+
+    /** Member answers that missed the deadline (or could not be queued) so far. */
+    public long getLateCount() {
+        return late.sum();
+    }
+
+    public long getDecisions() {
+        return decisions.sum();
+    }
+
+    @Override
+    public String getAnswer(String inputJson) {
+        try {
+            String history = Picks.stringField(inputJson, "history");
+            return Picks.json(history == null ? Picks.SKIP : pick(History.parse(history)));
+        } catch (RuntimeException e) {
+            return Picks.json(Picks.SKIP);
+        }
+    }
+
+    @Override
+    public String getAnswer(History history) {
+        return Picks.json(pick(history));
+    }
+
+    @Override
+    public boolean canStall() {
+        return false;
+    }
+
+    @Override
+    public boolean retryOnSkip() {
+        return false;
+    }
+
+    @Override
+    public void observe(History history, boolean nextIsT) {
+        for (Predictor m : members) {
+            m.observe(history, nextIsT);
+        }
+    }
+
+    @Override
+    public void warmUp() {
+        for (Predictor m : members) {
+            m.warmUp();
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        for (Predictor m : members) {
+            m.close();
+        }
+    }
+}
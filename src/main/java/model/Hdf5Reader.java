@@ -0,0 +1,242 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal read-only HDF5 parser, just enough for the {@code model.weights.h5}
+ * that Keras writes inside a {@code .keras} archive: superblock v0/v1,
+ * version-1 object headers, old-style groups (symbol table + v1 B-tree +
+ * local heap) and contiguous/compact little-endian float32 datasets.
+ *
+ * Anything outside that subset (chunked/compressed data, dense link storage,
+ * big-endian types) is reported as an {@link IOException}.
+ */
+final class Hdf5Reader {
+
+    private static final long UNDEFINED = -1L;
+
+    private static final int MSG_DATASPACE = 0x0001;
+    private static final int MSG_DATATYPE = 0x0003;
+    private static final int MSG_LAYOUT = 0x0008;
+    private static final int MSG_CONTINUATION = 0x0010;
+    private static final int MSG_SYMBOL_TABLE = 0x0011;
+
+    private final ByteBuffer buf;
+    private final long rootHeader;
+
+    Hdf5Reader(byte[] file) throws IOException {
+        this.buf = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        if (file.length < 96 || buf.getLong(0) != 0x0A1A0A0D46444889L) {
+            throw new IOException("not an HDF5 file");
+        }
+        int version = buf.get(8);
+        if (version > 1) {
+            throw new IOException("unsupported superblock version " + version);
+        }
+        if (buf.get(13) != 8 || buf.get(14) != 8) {
+            throw new IOException("only 8-byte offsets/lengths are supported");
+        }
+        // v1 superblock carries 4 extra bytes (indexed storage K + reserved)
+        int rootEntry = (version == 0) ? 56 : 60;
+        this.rootHeader = buf.getLong(rootEntry + 8);
+    }
+
+    /** Child names of the group at {@code path} ("" or "/" is the root). */
+    List<String> list(String path) throws IOException {
+        long[] symtab = symbolTable(resolve(path), path);
+        List<String> names = new ArrayList<>();
+        walkGroup(symtab[0], symtab[1], names, null, null);
+        return names;
+    }
+
+    /** Dimensions of the dataset at {@code path}. */
+    long[] shape(String path) throws IOException {
+        return dataset(path).dims;
+    }
+
+    /** Row-major contents of the float32 dataset at {@code path}. */
+    float[] readFloats(String path) throws IOException {
+        Dataset ds = dataset(path);
+        if (!ds.isFloat || ds.elemSize != 4 || ds.bigEndian) {
+            throw new IOException(path + ": expected little-endian float32");
+        }
+        long n = 1;
+        for (long d : ds.dims) {
+            n *= d;
+        }
+        if (n * 4 > ds.byteSize || ds.address == UNDEFINED && n > 0) {
+            throw new IOException(path + ": truncated data");
+        }
+        float[] out = new float[(int) n];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = buf.getFloat((int) ds.address + i * 4);
+        }
+        return out;
+    }
+
+    // ==================== nội bộ ======================
+    private static final class Dataset {
+        long[] dims;
+        boolean isFloat, bigEndian;
+        int elemSize;
+        long address = UNDEFINED, byteSize;
+    }
+
+    private long resolve(String path) throws IOException {
+        long header = rootHeader;
+        for (String part : path.split("/")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            long[] symtab = symbolTable(header, path);
+            long[] found = new long[]{UNDEFINED};
+            walkGroup(symtab[0], symtab[1], null, part, found);
+            if (found[0] == UNDEFINED) {
+                throw new IOException("no such object: " + path);
+            }
+            header = found[0];
+        }
+        return header;
+    }
+
+    private long[] symbolTable(long header, String path) throws IOException {
+        long[] result = null;
+        for (long[] msg : messages(header)) {
+            if (msg[0] == MSG_SYMBOL_TABLE) {
+                int p = (int) msg[1];
+                result = new long[]{buf.getLong(p), buf.getLong(p + 8)};
+            }
+        }
+        if (result == null) {
+            throw new IOException("not an old-style group: " + path);
+        }
+        return result;
+    }
+
+    private Dataset dataset(String path) throws IOException {
+        Dataset ds = new Dataset();
+        boolean haveSpace = false, haveType = false, haveLayout = false;
+        for (long[] msg : messages(resolve(path))) {
+            int p = (int) msg[1];
+            switch ((int) msg[0]) {
+                case MSG_DATASPACE -> {
+                    int ver = buf.get(p) & 0xFF, rank = buf.get(p + 1) & 0xFF;
+                    int at = p + (ver == 1 ? 8 : 4);
+                    ds.dims = new long[rank];
+                    for (int i = 0; i < rank; i++) {
+                        ds.dims[i] = buf.getLong(at + i * 8);
+                    }
+                    haveSpace = true;
+                }
+                case MSG_DATATYPE -> {
+                    ds.isFloat = (buf.get(p) & 0x0F) == 1;
+                    ds.bigEndian = (buf.get(p + 1) & 0x01) != 0;
+                    ds.elemSize = buf.getInt(p + 4);
+                    haveType = true;
+                }
+                case MSG_LAYOUT -> {
+                    int ver = buf.get(p) & 0xFF;
+                    if (ver != 3) {
+                        throw new IOException(path + ": unsupported layout version " + ver);
+                    }
+                    int cls = buf.get(p + 1) & 0xFF;
+                    if (cls == 0) {            // compact: data lives in the message
+                        ds.byteSize = buf.getShort(p + 2) & 0xFFFF;
+                        ds.address = p + 4;
+                    } else if (cls == 1) {     // contiguous
+                        ds.address = buf.getLong(p + 2);
+                        ds.byteSize = buf.getLong(p + 10);
+                    } else {
+                        throw new IOException(path + ": chunked datasets are not supported");
+                    }
+                    haveLayout = true;
+                }
+                default -> {
+                }
+            }
+        }
+        if (!haveSpace || !haveType || !haveLayout) {
+            throw new IOException("not a dataset: " + path);
+        }
+        return ds;
+    }
+
+    /** All messages of a v1 object header as {type, dataOffset}, following continuations. */
+    private List<long[]> messages(long header) throws IOException {
+        int h = (int) header;
+        if (buf.get(h) != 1) {
+            throw new IOException("unsupported object header version at " + header);
+        }
+        int count = buf.getShort(h + 2) & 0xFFFF;
+        List<long[]> out = new ArrayList<>(count);
+        List<long[]> blocks = new ArrayList<>();
+        blocks.add(new long[]{h + 16, buf.getInt(h + 8) & 0xFFFFFFFFL});
+        for (int b = 0; b < blocks.size(); b++) {
+            long p = blocks.get(b)[0], end = p + blocks.get(b)[1];
+            while (p + 8 <= end) {
+                int type = buf.getShort((int) p) & 0xFFFF;
+                int size = buf.getShort((int) p + 2) & 0xFFFF;
+                long data = p + 8;
+                if (type == MSG_CONTINUATION) {
+                    blocks.add(new long[]{buf.getLong((int) data), buf.getLong((int) data + 8)});
+                } else {
+                    out.add(new long[]{type, data});
+                }
+                p = data + size;
+            }
+        }
+        return out;
+    }
+
+    /** Visits every symbol of a group; collects names and/or looks one up. */
+    private void walkGroup(long btree, long heap, List<String> names, String want, long[] found) throws IOException {
+        int hp = (int) heap;
+        if (buf.getInt(hp) != 0x50414548) { // "HEAP"
+            throw new IOException("bad local heap at " + heap);
+        }
+        long heapData = buf.getLong(hp + 24);
+        walkNode(btree, heapData, names, want, found);
+    }
+
+    private void walkNode(long node, long heapData, List<String> names, String want, long[] found) throws IOException {
+        int p = (int) node;
+        int sig = buf.getInt(p);
+        if (sig == 0x444F4E53) { // "SNOD"
+            int n = buf.getShort(p + 6) & 0xFFFF;
+            for (int i = 0; i < n; i++) {
+                int e = p + 8 + i * 40;
+                String name = cString(heapData + buf.getLong(e));
+                if (names != null) {
+                    names.add(name);
+                }
+                if (name.equals(want)) {
+                    found[0] = buf.getLong(e + 8);
+                }
+            }
+            return;
+        }
+        if (sig != 0x45455254) { // "TREE"
+            throw new IOException("bad group node at " + node);
+        }
+        int used = buf.getShort(p + 6) & 0xFFFF;
+        // header(24) then key0, child0, key1, child1, ... with 8-byte keys
+        for (int i = 0; i < used; i++) {
+            walkNode(buf.getLong(p + 24 + 8 + i * 16), heapData, names, want, found);
+        }
+    }
+
+    private String cString(long at) {
+        int s = (int) at, e = s;
+        while (buf.get(e) != 0) {
+            e++;
+        }
+        byte[] b = new byte[e - s];
+        buf.get(s, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,95 @@
+package model;
+
+/**
+ * Immutable T/X history packed into an int: T=1, X=0, the oldest dot in the
+ * highest of {@code length} bits and the newest dot in bit 0.  This is the
+ * same bitmask {@link PredictionTable} and {@link Predictor#pickAll} index by,
+ * so a history goes from the scanner to a table lookup without ever being
+ * turned into a String.
+ */
+public final class History {
+
+    public static final int MAX_LENGTH = 31;
+
+    private final int bits;
+    private final int length;
+
+    private History(int bits, int length) {
+        this.bits = bits;
+        this.length = length;
+    }
+
+    public static History of(int bits, int length) {
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("length must be 0.." + MAX_LENGTH);
+        }
+        return new History(bits & mask(length), length);
+    }
+
+    /** Parses a T/X string; any character other than 'T' counts as X (as in predict.py). */
+    public static History parse(CharSequence tx) {
+        int n = tx.length(), b = 0;
+        for (int i = 0; i < n; i++) {
+            b = (b << 1) | (tx.charAt(i) == 'T' ? 1 : 0);
+        }
+        return of(b, n);
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /** True if dot {@code i} (0 = oldest) is T. */
+    public boolean isT(int i) {
+        if (i < 0 || i >= length) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return ((bits >>> (length - 1 - i)) & 1) != 0;
+    }
+
+    public char charAt(int i) {
+        return isT(i) ? 'T' : 'X';
+    }
+
+    /** True if the newest dot is T. */
+    public boolean lastIsT() {
+        return length > 0 && (bits & 1) != 0;
+    }
+
+    /** This history with one more dot at the end (longer by one). */
+    public History append(boolean t) {
+        return of((bits << 1) | (t ? 1 : 0), length + 1);
+    }
+
+    /** The same-size window after one more dot: oldest dot drops out. */
+    public History shift(boolean t) {
+        return of((bits << 1) | (t ? 1 : 0), length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof History h) && h.bits == bits && h.length == length;
+    }
+
+    @Override
+    public int hashCode() {
+        return bits * 31 + length;
+    }
+
+    @Override
+    public String toString() {
+        char[] c = new char[length];
+        for (int i = 0; i < length; i++) {
+            c[i] = ((bits >>> (length - 1 - i)) & 1) != 0 ? 'T' : 'X';
+        }
+        return new String(c);
+    }
+
+    private static int mask(int length) {
+        return (1 << length) - 1;
+    }
+}
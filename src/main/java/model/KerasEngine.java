@@ -0,0 +1,526 @@
+package model;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Pure-Java inference for {@code sicbo_core.keras}.  The architecture is read
+ * from the archive's {@code config.json}, the weights from its
+ * {@code model.weights.h5}, and the forward pass runs on plain
+ * {@code float[]} arrays.  No Python, TensorFlow or IPC is involved.
+ *
+ * Supported layers are the ones the model uses: LSTM, Dropout (identity at
+ * inference) and Dense.  The pick follows {@code predict.py} exactly: the
+ * history is encoded T=1/X=0 as one feature per time step, and the answer
+ * is the argmax of the output vector mapped 0=TAI, 1=XIU, 2=SKIP.
+ */
+public class KerasEngine implements Predictor {
+
+    public static final Path DEFAULT_MODEL = Path.of("src", "main", "java", "model", "sicbo_core.keras");
+
+    private final Layer[] layers;
+    private final int inputFeatures;
+
+    public KerasEngine() throws IOException {
+        this(DEFAULT_MODEL);
+    }
+
+    public KerasEngine(Path modelPath) throws IOException {
+        String config;
+        byte[] weights;
+        try (ZipFile zip = new ZipFile(modelPath.toFile())) {
+            config = new String(readEntry(zip, "config.json"), StandardCharsets.UTF_8);
+            weights = readEntry(zip, "model.weights.h5");
+        }
+        Hdf5Reader h5 = new Hdf5Reader(weights);
+
+        List<Layer> built = new ArrayList<>();
+        Map<String, Integer> seen = new HashMap<>();
+        int features = -1;
+        JsonArray specs = JsonParser.parseString(config).getAsJsonObject()
+                .getAsJsonObject("config").getAsJsonArray("layers");
+        for (JsonElement el : specs) {
+            JsonObject spec = el.getAsJsonObject();
+            String cls = spec.get("class_name").getAsString();
+            JsonObject cfg = spec.getAsJsonObject("config");
+            if (cls.equals("InputLayer")) {
+                JsonArray shape = cfg.getAsJsonArray("batch_shape");
+                features = shape.get(shape.size() - 1).getAsInt();
+                continue;
+            }
+            // Keras 3 stores weights under layers/<snake_case class>[_n]
+            String base = cls.toLowerCase();
+            int n = seen.merge(base, 1, Integer::sum) - 1;
+            String name = "/layers/" + (n == 0 ? base : base + "_" + n);
+            switch (cls) {
+                case "LSTM" -> built.add(new Lstm(
+                        h5.readFloats(name + "/cell/vars/0"),
+                        h5.readFloats(name + "/cell/vars/1"),
+                        h5.readFloats(name + "/cell/vars/2"),
+                        cfg.get("units").getAsInt(),
+                        cfg.get("return_sequences").getAsBoolean(),
+                        activation(cfg.get("activation").getAsString()),
+                        activation(cfg.get("recurrent_activation").getAsString())));
+                case "Dense" -> built.add(new Dense(
+                        h5.readFloats(name + "/vars/0"),
+                        h5.readFloats(name + "/vars/1"),
+                        cfg.get("units").getAsInt(),
+                        activation(cfg.get("activation").getAsString())));
+                case "Dropout" -> {
+                    // identity at inference
+                }
+                default -> throw new IOException("unsupported layer " + cls);
+            }
+        }
+        if (features < 1 || built.isEmpty()) {
+            throw new IOException("no input layer / no weights in " + modelPath);
+        }
+        this.inputFeatures = features;
+        this.layers = built.toArray(new Layer[0]);
+    }
+
+    /**
+     * Runs the network on a sequence of {@code steps} time steps, each with
+     * the model's input feature count, laid out row-major in {@code x}.
+     * Returns the raw output of the last layer (one row per step if the last
+     * layer keeps the time axis).
+     */
+    public float[] forward(float[] x, int steps) {
+        float[] a = x;
+        int rows = steps, dim = inputFeatures;
+        for (Layer layer : layers) {
+            a = layer.apply(a, rows, dim);
+            if (layer instanceof Lstm l) {
+                rows = l.returnSequences ? rows : 1;
+            }
+            dim = layer.units();
+        }
+        return a;
+    }
+
+    /** Pick index (0=TAI, 1=XIU, 2=SKIP) for a history, as predict.py computes it. */
+    public int pick(History history) {
+        int steps = history.length();
+        if (steps == 0) {
+            return Picks.SKIP;
+        }
+        float[] x = new float[steps * inputFeatures];
+        for (int t = 0; t < steps; t++) {
+            x[t * inputFeatures] = history.isT(t) ? 1f : 0f;
+        }
+        return argmax(forward(x, steps));
+    }
+
+    @Override
+    public String getAnswer(String inputJson) {
+        try {
+            String history = Picks.stringField(inputJson, "history");
+            return Picks.json(history == null ? Picks.SKIP : pick(History.parse(history)));
+        } catch (RuntimeException e) {
+            return Picks.json(Picks.SKIP);
+        }
+    }
+
+    @Override
+    public String getAnswer(History history) {
+        return Picks.json(pick(history));
+    }
+
+    @Override
+    public boolean canStall() {
+        return false;
+    }
+
+    @Override
+    public boolean retryOnSkip() {
+        // model cố định, suy luận tất định -> hỏi lại vẫn ra đúng kèo đó
+        return false;
+    }
+
+    /**
+     * Evaluates every history of {@code length} dots in one pass.  When the
+     * model is a stack of LSTMs followed by per-row layers, the recurrent
+     * state after a given prefix is shared by all histories starting with it,
+     * so the prefix tree is walked depth-first and each prefix is stepped
+     * once: 2^(n+1)-2 cell steps instead of n*2^n.
+     */
+    @Override
+    public byte[] pickAll(int length) {
+        int stacked = 0;
+        while (stacked < layers.length && layers[stacked] instanceof Lstm) {
+            stacked++;
+        }
+        boolean prefixShareable = inputFeatures == 1 && stacked > 0 && length > 0
+                && !((Lstm) layers[stacked - 1]).returnSequences;
+        for (int l = 0; l < stacked - 1 && prefixShareable; l++) {
+            prefixShareable = ((Lstm) layers[l]).returnSequences;
+        }
+        if (!prefixShareable) {
+            return Predictor.super.pickAll(length);
+        }
+        PrefixWalk w = new PrefixWalk(length, stacked);
+        w.descend(0, 0);
+        return w.out;
+    }
+
+    private final class PrefixWalk {
+        final int length, stacked;
+        final float[][][] h, c;   // [depth][lstm layer][units]
+        final float[] x = new float[1];
+        final float[][] z;
+        final byte[] out;
+
+        PrefixWalk(int length, int stacked) {
+            this.length = length;
+            this.stacked = stacked;
+            this.h = new float[length + 1][stacked][];
+            this.c = new float[length + 1][stacked][];
+            this.z = new float[stacked][];
+            for (int l = 0; l < stacked; l++) {
+                int u = ((Lstm) layers[l]).units;
+                z[l] = new float[4 * u];
+                for (int d = 0; d <= length; d++) {
+                    h[d][l] = new float[u];
+                    c[d][l] = new float[u];
+                }
+            }
+            this.out = new byte[1 << length];
+        }
+
+        void descend(int depth, int bits) {
+            if (depth == length) {
+                float[] a = h[depth][stacked - 1];
+                int dim = layers[stacked - 1].units();
+                for (int l = stacked; l < layers.length; l++) {
+                    a = layers[l].apply(a, 1, dim);
+                    dim = layers[l].units();
+                }
+                out[bits] = (byte) argmax(a);
+                return;
+            }
+            for (int v = 0; v <= 1; v++) {
+                x[0] = v;
+                float[] in = x;
+                int dim = 1;
+                for (int l = 0; l < stacked; l++) {
+                    Lstm lstm = (Lstm) layers[l];
+                    lstm.step(in, 0, dim, h[depth][l], c[depth][l], h[depth + 1][l], c[depth + 1][l], z[l]);
+                    in = h[depth + 1][l];
+                    dim = lstm.units;
+                }
+                descend(depth + 1, (bits << 1) | v);
+            }
+        }
+    }
+
+    static int argmax(float[] out) {
+        int best = 0;
+        for (int i = 1; i < out.length; i++) {
+            if (out[i] > out[best]) {
+                best = i;
+            }
+        }
+        return best <= Picks.SKIP ? best : Picks.SKIP;
+    }
+
+    private static byte[] readEntry(ZipFile zip, String name) throws IOException {
+        ZipEntry e = zip.getEntry(name);
+        if (e == null) {
+            throw new IOException(name + " missing from " + zip.getName());
+        }
+        return zip.getInputStream(e).readAllBytes();
+    }
+
+    // ==================== layers ======================
+    private static final int LINEAR = 0, SIGMOID = 1, TANH = 2, RELU = 3, SOFTMAX = 4;
+
+    private static int activation(String name) throws IOException {
+        return switch (name) {
+            case "linear" -> LINEAR;
+            case "sigmoid" -> SIGMOID;
+            case "tanh" -> TANH;
+            case "relu" -> RELU;
+            case "softmax" -> SOFTMAX;
+            default -> throw new IOException("unsupported activation " + name);
+        };
+    }
+
+    private static float act(int kind, float v) {
+        return switch (kind) {
+            case SIGMOID -> (float) (1.0 / (1.0 + Math.exp(-v)));
+            case TANH -> (float) Math.tanh(v);
+            case RELU -> Math.max(0f, v);
+            default -> v;
+        };
+    }
+
+    private interface Layer {
+        float[] apply(float[] in, int rows, int dim);
+
+        int units();
+    }
+
+    /** Keras LSTM, gate order i, f, c, o; kernel [in][4u], recurrent [u][4u]. */
+    private static final class Lstm implements Layer {
+        final float[] kernel, recurrent, bias;
+        final int units, act, recAct;
+        final boolean returnSequences;
+
+        Lstm(float[] kernel, float[] recurrent, float[] bias, int units, boolean returnSequences, int act, int recAct) {
+            this.kernel = kernel;
+            this.recurrent = recurrent;
+            this.bias = bias;
+            this.units = units;
+            this.returnSequences = returnSequences;
+            this.act = act;
+            this.recAct = recAct;
+        }
+
+        @Override
+        public int units() {
+            return units;
+        }
+
+        @Override
+        public float[] apply(float[] in, int steps, int dim) {
+            int u = units;
+            float[] h = new float[u], c = new float[u], z = new float[4 * u];
+            float[] out = returnSequences ? new float[steps * u] : h;
+            for (int t = 0; t < steps; t++) {
+                step(in, t * dim, dim, h, c, h, c, z);
+                if (returnSequences) {
+                    System.arraycopy(h, 0, out, t * u, u);
+                }
+            }
+            return out;
+        }
+
+        /**
+         * One time step from state (hPrev, cPrev) into (hOut, cOut); the output
+         * arrays may alias the inputs.  {@code z} is scratch of size 4*units.
+         */
+        void step(float[] in, int off, int dim, float[] hPrev, float[] cPrev, float[] hOut, float[] cOut, float[] z) {
+            int u = units, g4 = 4 * u;
+            System.arraycopy(bias, 0, z, 0, g4);
+            for (int k = 0; k < dim; k++) {
+                float xk = in[off + k];
+                if (xk == 0f) {
+                    continue;
+                }
+                int row = k * g4;
+                for (int j = 0; j < g4; j++) {
+                    z[j] += xk * kernel[row + j];
+                }
+            }
+            for (int k = 0; k < u; k++) {
+                float hk = hPrev[k];
+                int row = k * g4;
+                for (int j = 0; j < g4; j++) {
+                    z[j] += hk * recurrent[row + j];
+                }
+            }
+            for (int j = 0; j < u; j++) {
+                float i = act(recAct, z[j]);
+                float f = act(recAct, z[u + j]);
+                float cc = act(act, z[2 * u + j]);
+                float o = act(recAct, z[3 * u + j]);
+                cOut[j] = f * cPrev[j] + i * cc;
+                hOut[j] = o * act(act, cOut[j]);
+            }
+        }
+    }
+
+    /** Keras Dense applied to every row of its input. */
+    private static final class Dense implements Layer {
+        final float[] kernel, bias;
+        final int units, act;
+
+        Dense(float[] kernel, float[] bias, int units, int act) {
+            this.kernel = kernel;
+            this.bias = bias;
+            this.units = units;
+            this.act = act;
+        }
+
+        @Override
+        public int units() {
+            return units;
+        }
+
+        @Override
+        public float[] apply(float[] in, int rows, int dim) {
+            float[] out = new float[rows * units];
+            for (int r = 0; r < rows; r++) {
+                int o = r * units;
+                System.arraycopy(bias, 0, out, o, units);
+                for (int k = 0; k < dim; k++) {
+                    float v = in[r * dim + k];
+                    for (int j = 0; j < units; j++) {
+                        out[o + j] += v * kernel[k * units + j];
+                    }
+                }
+                if (act == SOFTMAX) {
+                    float max = Float.NEGATIVE_INFINITY, sum = 0f;
+                    for (int j = 0; j < units; j++) {
+                        max = Math.max(max, out[o + j]);
+                    }
+                    for (int j = 0; j < units; j++) {
+                        out[o + j] = (float) Math.exp(out[o + j] - max);
+                        sum += out[o + j];
+                    }
+                    for (int j = 0; j < units; j++) {
+                        out[o + j] /= sum;
+                    }
+                } else {
+                    for (int j = 0; j < units; j++) {
+                        out[o + j] = act(act, out[o + j]);
+                    }
+                }
+            }
+            return out;
+        }
+    }
+
+    // ==================== parity check ======================
+    /** Default tolerance of the parity check on raw outputs. */
+    static final double PARITY_TOLERANCE = 1e-4;
+
+    /**
+     * Parity with the Python side.  Exits with status 1 on any pick mismatch
+     * or output drift above the tolerance.
+     * <ul>
+     *   <li>{@code KerasEngine [fixture=<model>.parity] [tolerance=1e-4]}:
+     *       compares with committed TensorFlow outputs (recorded through
+     *       predict.py by {@code parity_fixture.py}); needs no Python.  Runs
+     *       in the build's test phase.  A fixture whose header does not say
+     *       {@code source=tensorflow} fails: outputs from another
+     *       reimplementation would not prove parity with Keras.</li>
+     *   <li>{@code KerasEngine --python [historyLength=13] [samples=500]}:
+     *       compares with a live predict.py worker on random histories.</li>
+     * </ul>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--python")) {
+            int len = args.length > 1 ? Integer.parseInt(args[1]) : 13;
+            int samples = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+            if (!parityWithPython(new KerasEngine(), len, samples)) {
+                System.exit(1);
+            }
+            return;
+        }
+        Path fixture = args.length > 0 ? Path.of(args[0])
+                : DEFAULT_MODEL.resolveSibling(DEFAULT_MODEL.getFileName() + ".parity");
+        double tolerance = args.length > 1 ? Double.parseDouble(args[1]) : PARITY_TOLERANCE;
+        if (!parityWithFixture(new KerasEngine(), fixture, tolerance)) {
+            System.exit(1);
+        }
+    }
+
+    /** Raw outputs of {@code history} encoded as predict.py does (T=1, X=0). */
+    float[] rawOutput(String history) {
+        int len = history.length();
+        float[] x = new float[len * inputFeatures];
+        for (int t = 0; t < len; t++) {
+            x[t * inputFeatures] = history.charAt(t) == 'T' ? 1f : 0f;
+        }
+        return forward(x, len);
+    }
+
+    /**
+     * Compares with a fixture of lines {@code <history> <out0> <out1> ...}
+     * ('#' starts a comment).  A missing or empty fixture, or one not
+     * recorded from TensorFlow, fails.
+     */
+    static boolean parityWithFixture(KerasEngine engine, Path fixture, double tolerance) throws IOException {
+        if (!Files.exists(fixture)) {
+            System.out.println("[FAIL] no parity fixture " + fixture
+                    + ": run parity_fixture.py where TensorFlow is installed and commit its output");
+            return false;
+        }
+        int rows = 0, pickMismatches = 0;
+        double worst = 0;
+        boolean fromTensorflow = false;
+        for (String line : Files.readAllLines(fixture, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.startsWith("#")) {
+                fromTensorflow |= line.contains("source=tensorflow");
+                continue;
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] f = line.split("\\s+");
+            float[] out = engine.rawOutput(f[0]);
+            float[] want = new float[f.length - 1];
+            for (int j = 0; j < want.length; j++) {
+                want[j] = Float.parseFloat(f[j + 1]);
+            }
+            double diff = want.length == out.length ? 0 : Double.POSITIVE_INFINITY;
+            for (int j = 0; j < Math.min(want.length, out.length); j++) {
+                diff = Math.max(diff, Math.abs(want[j] - out[j]));
+            }
+            if (diff > tolerance) {
+                System.out.println("[DIFF] " + f[0] + " want=" + Arrays.toString(want) + " java=" + Arrays.toString(out));
+            }
+            if (argmax(want) != argmax(out)) {
+                pickMismatches++;
+            }
+            worst = Math.max(worst, diff);
+            rows++;
+        }
+        System.out.printf("Parity vs %s: histories=%d pickMismatches=%d maxAbsDiff=%.2e (tolerance %.0e)%n",
+                fixture.getFileName(), rows, pickMismatches, worst, tolerance);
+        if (!fromTensorflow) {
+            System.out.println("[FAIL] " + fixture.getFileName() + " was not recorded from TensorFlow (no source=tensorflow"
+                    + " header): regenerate it with parity_fixture.py");
+            return false;
+        }
+        return rows > 0 && pickMismatches == 0 && worst <= tolerance;
+    }
+
+    // so với worker predict.py đang chạy; bỏ qua so sánh xác suất nếu worker không trả "out"
+    private static boolean parityWithPython(KerasEngine engine, int len, int samples) {
+        int mismatches = 0;
+        double worst = 0;
+        Random rnd = new Random(42);
+        try (LLM python = new LLM()) {
+            for (int s = 0; s < samples; s++) {
+                StringBuilder sb = new StringBuilder(len);
+                for (int i = 0; i < len; i++) {
+                    sb.append(rnd.nextBoolean() ? 'T' : 'X');
+                }
+                String hist = sb.toString();
+                String py = python.getAnswer("{\"history\":\"" + hist + "\",\"raw\":true}");
+                float[] out = engine.rawOutput(hist);
+                String javaPick = Picks.NAMES[argmax(out)];
+                if (!javaPick.equals(Picks.stringField(py, "pick"))) {
+                    mismatches++;
+                    System.out.println("[DIFF] " + hist + " python=" + py + " java=" + javaPick);
+                }
+                int k = py.indexOf("\"out\"");
+                if (k >= 0) {
+                    String[] vals = py.substring(py.indexOf('[', k) + 1, py.indexOf(']', k)).split(",");
+                    for (int j = 0; j < vals.length && j < out.length; j++) {
+                        worst = Math.max(worst, Math.abs(Double.parseDouble(vals[j].trim()) - out[j]));
+                    }
+                }
+            }
+        }
+        System.out.printf("Parity: samples=%d mismatches=%d maxAbsDiff=%.2e%n", samples, mismatches, worst);
+        return mismatches == 0 && worst <= PARITY_TOLERANCE;
+    }
+}
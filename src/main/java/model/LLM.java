@@ -3,6 +3,10 @@ package model;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Replacement for the previous LLM class that delegates predictions
@@ -11,14 +15,65 @@ import java.nio.file.Path;
  * The class communicates with a small Python helper script that
  * loads the Keras model and writes a JSON result to stdout.  The
  * helper reads a JSON string from stdin with a field "history".
+ *
+ * By default the helper runs as a persistent worker ({@code --worker}):
+ * it is started once, keeps TensorFlow and the model loaded, and
+ * exchanges length-framed messages (4-byte big-endian length + UTF-8
+ * payload) over its stdin/stdout.  A worker that dies is restarted on
+ * the next call.  Responses are read by a daemon thread per worker and
+ * waited for with a deadline: a worker that is alive but stuck is killed
+ * when the deadline passes, the call answers SKIP, and the next call
+ * starts a fresh one, so one hang never holds the lock for later rounds.
  */
-public class LLM {
+public class LLM implements Predictor {
+
+    private static final String SKIP_JSON = "{\"pick\":\"SKIP\"}";
+    private static final int MAX_FRAME = 1 << 20;
+    /** Deadline of one answer; below Statistic's 12s so the worker is recycled before callers give up. */
+    public static final long DEFAULT_TIMEOUT_MS = 10_000;
+    // lần đầu gồm import TF + nạp model, pickAll chạy 2^n dòng -> cho thêm thời gian
+    private static final long STARTUP_TIMEOUT_MS = 60_000;
+    private static final byte[] EOF = new byte[0];
 
     private final Path scriptPath;
+    private final boolean persistent;
+    private final long timeoutMs;
+
+    // Worker state, guarded by this
+    private Process worker;
+    private DataOutputStream toWorker;
+    private BlockingQueue<byte[]> fromWorker;   // frame do thread đọc đẩy vào; EOF = worker đã đóng stdout
+    private boolean launched;
+    private int restarts;
+    private int timeouts;
+    private boolean fresh;   // worker vừa start: request đầu còn import TF + nạp model
+    private int stale;       // response của các lần gọi bị interrupt, sẽ tới sau -> bỏ qua
 
     public LLM() {
+        this(true);
+    }
+
+    /**
+     * @param persistent {@code true} to keep one warm worker process,
+     *                   {@code false} for the old process-per-call mode
+     */
+    public LLM(boolean persistent) {
+        this(persistent, DEFAULT_TIMEOUT_MS);
+    }
+
+    /** @param timeoutMs deadline of one worker answer, after which the worker is killed */
+    public LLM(boolean persistent, long timeoutMs) {
         // Path to the Python helper script located alongside the model
-        this.scriptPath = Path.of("src", "main", "java", "model", "predict.py");
+        this(Path.of("src", "main", "java", "model", "predict.py"), persistent, timeoutMs);
+    }
+
+    LLM(Path scriptPath, boolean persistent, long timeoutMs) {
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("timeoutMs must be > 0");
+        }
+        this.scriptPath = scriptPath;
+        this.persistent = persistent;
+        this.timeoutMs = timeoutMs;
     }
 
     /**
@@ -26,7 +81,180 @@ public class LLM {
      * JSON the script prints.  In case of any error, a default
      * SKIP response is returned.
      */
+    @Override
     public String getAnswer(String inputJson) {
+        return persistent ? askWorker(inputJson, timeoutMs) : askOneShot(inputJson);
+    }
+
+    /**
+     * Asks the helper for every history of {@code length} dots in a single
+     * request ({"all":n}), which it answers with one batched model call.
+     */
+    @Override
+    public byte[] pickAll(int length) {
+        String req = "{\"all\":" + length + "}";
+        String picks = Picks.stringField(persistent ? askWorker(req, Math.max(timeoutMs, STARTUP_TIMEOUT_MS))
+                : askOneShot(req), "picks");
+        byte[] out = new byte[1 << length];
+        if (picks == null || picks.length() != out.length) {
+            Arrays.fill(out, (byte) Picks.SKIP);
+            return out;
+        }
+        for (int i = 0; i < out.length; i++) {
+            int p = picks.charAt(i) - '0';
+            out[i] = (byte) ((p >= Picks.TAI && p <= Picks.SKIP) ? p : Picks.SKIP);
+        }
+        return out;
+    }
+
+    /**
+     * Asks the helper for several histories in a single request
+     * ({"batch":"TX..,XT.."}), answered with one model call per distinct
+     * length instead of one call per history.
+     */
+    @Override
+    public void pickBatch(History[] histories, int n, byte[] out) {
+        if (n == 0) {
+            return;
+        }
+        StringBuilder req = new StringBuilder(16 + n * 14).append("{\"batch\":\"");
+        for (int i = 0; i < n; i++) {
+            req.append(i == 0 ? "" : ",").append(histories[i]);
+        }
+        String picks = Picks.stringField(getAnswer(req.append("\"}").toString()), "picks");
+        for (int i = 0; i < n; i++) {
+            int p = (picks != null && picks.length() == n) ? picks.charAt(i) - '0' : Picks.SKIP;
+            out[i] = (byte) ((p >= Picks.TAI && p <= Picks.SKIP) ? p : Picks.SKIP);
+        }
+    }
+
+    /**
+     * Starts the worker and pushes one request through it so the TF import
+     * and model load happen before the first real round.
+     */
+    @Override
+    public void warmUp() {
+        if (persistent) {
+            askWorker("{\"history\":\"\"}", timeoutMs);
+        }
+    }
+
+    /** Number of times the worker had to be (re)started after the first launch. */
+    public synchronized int getRestarts() {
+        return restarts;
+    }
+
+    /** Answers that missed the deadline (each one killed its worker). */
+    public synchronized int getTimeouts() {
+        return timeouts;
+    }
+
+    @Override
+    public synchronized void close() {
+        stopWorker();
+    }
+
+    // ==================== persistent worker ======================
+    private synchronized String askWorker(String inputJson, long timeoutMs) {
+        byte[] req = inputJson.getBytes(StandardCharsets.UTF_8);
+        // 2 attempts: if the worker crashed since the last call, the first
+        // write/read fails, we restart it and try once more.  A timeout is
+        // not retried: the round has already waited long enough.
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                ensureWorker();
+                long wait = fresh ? Math.max(timeoutMs, STARTUP_TIMEOUT_MS) : timeoutMs;
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait);
+                toWorker.writeInt(req.length);
+                toWorker.write(req);
+                toWorker.flush();
+
+                byte[] resp = fromWorker.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                while (resp != null && resp != EOF && stale > 0) {
+                    stale--;
+                    resp = fromWorker.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+                if (resp == null) {
+                    timeouts++;
+                    stopWorker(); // kẹt nhưng còn sống -> giết, lần gọi sau spawn worker mới
+                    return SKIP_JSON;
+                }
+                if (resp == EOF) {
+                    throw new IOException("worker closed its output");
+                }
+                fresh = false;
+                return new String(resp, StandardCharsets.UTF_8).trim();
+            } catch (IOException e) {
+                stopWorker();
+            } catch (InterruptedException e) {
+                // caller bỏ cuộc (vd. ensemble hết deadline): worker vẫn tốt, chỉ bỏ response muộn của lần này
+                Thread.currentThread().interrupt();
+                stale++;
+                return SKIP_JSON;
+            }
+        }
+        return SKIP_JSON;
+    }
+
+    private void ensureWorker() throws IOException {
+        if (worker != null && worker.isAlive()) {
+            return;
+        }
+        stopWorker();
+        if (launched) {
+            restarts++;
+        }
+        launched = true;
+        fresh = true;
+        stale = 0;
+        // stderr is inherited (not merged): stdout carries only frames
+        worker = new ProcessBuilder("python", scriptPath.toString(), "--worker")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        toWorker = new DataOutputStream(new BufferedOutputStream(worker.getOutputStream()));
+        fromWorker = new LinkedBlockingQueue<>();
+        Thread reader = new Thread(readFrames(
+                new DataInputStream(new BufferedInputStream(worker.getInputStream())), fromWorker), "llm-worker-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    // đọc frame tới khi worker đóng stdout (thoát hoặc bị destroy), rồi báo EOF
+    private static Runnable readFrames(DataInputStream in, BlockingQueue<byte[]> out) {
+        return () -> {
+            try {
+                while (true) {
+                    int n = in.readInt();
+                    if (n < 0 || n > MAX_FRAME) {
+                        break;
+                    }
+                    byte[] frame = new byte[n];
+                    in.readFully(frame);
+                    out.add(frame);
+                }
+            } catch (IOException ignored) {
+            } finally {
+                out.add(EOF);
+            }
+        };
+    }
+
+    private void stopWorker() {
+        if (worker == null) {
+            return;
+        }
+        try {
+            toWorker.close(); // EOF on stdin -> worker exits its loop
+        } catch (IOException ignored) {
+        }
+        worker.destroy();
+        worker = null;
+        toWorker = null;
+        fromWorker = null;
+    }
+
+    // ==================== one process per call ======================
+    private String askOneShot(String inputJson) {
         Process process = null;
         try {
             process = new ProcessBuilder("python", scriptPath.toString())
@@ -57,6 +285,6 @@ public class LLM {
                 process.destroy();
             }
         }
-        return "{\"pick\":\"SKIP\"}"; // default fallback
+        return SKIP_JSON; // default fallback
     }
 }
@@ -0,0 +1,146 @@
+package model;
+
+/**
+ * Online order-k Markov (n-gram) predictor over the T/X sequence.
+ *
+ * For every order 0..maxOrder it counts, per context of the last k dots,
+ * how often the next dot was T.  All counts live in two flat int arrays;
+ * the context is just the low k bits of {@link History#bits()}, so a
+ * prediction is a few array reads and an update is one increment per
+ * order.  Nothing is allocated and no model is retrained.
+ *
+ * Prediction backs off from the longest context that has at least
+ * {@code minSamples} observations.  When a context reaches
+ * {@code halfLife} observations both its counts are halved, so old rounds
+ * fade out and the predictor follows the table it is watching.
+ *
+ * {@link #observe}, {@link #pick(History, boolean)} and {@link #support}
+ * are synchronized: in multi-table mode one instance (or one
+ * ensemble member) is shared by tables pumped from several threads, and an
+ * unguarded halving racing an increment could leave nextT above seen.  The
+ * lock is uncontended almost always and costs far less than the round; a
+ * shared instance learns from all its tables pooled.
+ */
+public class MarkovPredictor implements Predictor {
+
+    private final int maxOrder;
+    private final int minSamples;
+    private final int halfLife;
+    private final double margin;
+
+    // order k dùng ô [2^k - 1, 2^(k+1) - 1): ctx = k bit cuối của history
+    private final int[] seen;
+    private final int[] nextT;
+
+    /** Order 8, 12 samples, margin 0.04, half-life 256. */
+    public MarkovPredictor() {
+        this(8, 12, 0.04, 256);
+    }
+
+    /**
+     * @param maxOrder   longest context in dots (0..13)
+     * @param minSamples observations a context needs before it is trusted
+     * @param margin     |P(T) - 0.5| needed to bet; below that the answer is SKIP
+     * @param halfLife   per-context count at which counts are halved
+     */
+    public MarkovPredictor(int maxOrder, int minSamples, double margin, int halfLife) {
+        if (maxOrder < 0 || maxOrder > 13 || minSamples < 1 || margin < 0 || margin >= 0.5 || halfLife < 2) {
+            throw new IllegalArgumentException("0<=maxOrder<=13, minSamples>=1, 0<=margin<0.5, halfLife>=2");
+        }
+        this.maxOrder = maxOrder;
+        this.minSamples = minSamples;
+        this.margin = margin;
+        this.halfLife = halfLife;
+        this.seen = new int[(1 << (maxOrder + 1)) - 1];
+        this.nextT = new int[seen.length];
+    }
+
+    @Override
+    public synchronized void observe(History history, boolean nextIsT) {
+        int top = Math.min(maxOrder, history.length());
+        int bits = history.bits();
+        for (int k = 0; k <= top; k++) {
+            int i = (1 << k) - 1 + (bits & ((1 << k) - 1));
+            int n = ++seen[i];
+            if (nextIsT) {
+                nextT[i]++;
+            }
+            if (n >= halfLife) {
+                seen[i] = n >> 1;
+                nextT[i] >>= 1;
+            }
+        }
+    }
+
+    /** Pick code (0=TAI, 1=XIU, 2=SKIP); SKIP when the deciding context is too close to 50/50. */
+    public int pick(History history) {
+        return pick(history, true);
+    }
+
+    /**
+     * With {@code allowSkip == false} the deciding context always leans one
+     * way (ties go to TAI); SKIP then only means no context has enough data,
+     * e.g. for use as a fallback that must bet.
+     */
+    public synchronized int pick(History history, boolean allowSkip) {
+        int bits = history.bits();
+        for (int k = Math.min(maxOrder, history.length()); k >= 0; k--) {
+            int i = (1 << k) - 1 + (bits & ((1 << k) - 1));
+            int n = seen[i];
+            if (n < minSamples) {
+                continue;
+            }
+            double p = (double) nextT[i] / n;
+            if (p >= 0.5 + margin || (!allowSkip && p >= 0.5)) {
+                return Picks.TAI;
+            }
+            if (p <= 0.5 - margin || !allowSkip) {
+                return Picks.XIU;
+            }
+            return Picks.SKIP;
+        }
+        return Picks.SKIP;
+    }
+
+    public int getMaxOrder() {
+        return maxOrder;
+    }
+
+    /** Observations behind the longest trusted context of {@code history} (0 = no data). */
+    public synchronized int support(History history) {
+        int bits = history.bits();
+        for (int k = Math.min(maxOrder, history.length()); k >= 0; k--) {
+            int n = seen[(1 << k) - 1 + (bits & ((1 << k) - 1))];
+            if (n >= minSamples) {
+                return n;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String getAnswer(String inputJson) {
+        try {
+            String history = Picks.stringField(inputJson, "history");
+            return Picks.json(history == null ? Picks.SKIP : pick(History.parse(history)));
+        } catch (RuntimeException e) {
+            return Picks.json(Picks.SKIP);
+        }
+    }
+
+    @Override
+    public String getAnswer(History history) {
+        return Picks.json(pick(history));
+    }
+
+    @Override
+    public boolean canStall() {
+        return false;
+    }
+
+    @Override
+    public boolean retryOnSkip() {
+        // cùng lịch sử, cùng bảng đếm -> hỏi lại vẫn ra đúng kèo đó
+        return false;
+    }
+}
@@ -0,0 +1,118 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Counts, for every pattern of up to {@code maxDepth} dots seen in a
+ * session, how often it was followed by T and by X.
+ *
+ * A binary trie keyed by the context read backwards (newest dot first):
+ * the node at depth d is the pattern of the d dots before an outcome.
+ * Appending one outcome walks the current context down the trie and
+ * increments one counter per depth, O(maxDepth); a query walks the pattern
+ * from its newest dot, O(|P|), independent of the session length.  Only
+ * contexts that actually occurred get a node, so memory grows with the
+ * variety of the sequence, not with its length once the short depths are
+ * saturated.
+ *
+ * Nodes are parallel int arrays (children, T count, X count) that double
+ * when full; node 0 is the empty context (plain T/X frequencies).
+ */
+public final class PatternIndex {
+
+    private final int maxDepth;
+    private int[] child;     // 2 ô / node: con khi dot trước đó là X (0) / T (1); 0 = chưa có
+    private int[] countT, countX;
+    private int nodes = 1;
+
+    public PatternIndex(int maxDepth) {
+        if (maxDepth < 1 || maxDepth > History.MAX_LENGTH) {
+            throw new IllegalArgumentException("maxDepth must be 1.." + History.MAX_LENGTH);
+        }
+        this.maxDepth = maxDepth;
+        child = new int[2 * 1024];
+        countT = new int[1024];
+        countX = new int[1024];
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * One outcome {@code t} after the context whose newest dot is
+     * {@code ctx.get(0)}, next newest {@code ctx.get(1)}, ... ({@code ctxLen}
+     * dots available, only the first maxDepth are used).
+     */
+    void add(boolean t, Context ctx, int ctxLen) {
+        int node = 0;
+        bump(node, t);
+        for (int d = 0, n = Math.min(ctxLen, maxDepth); d < n; d++) {
+            int slot = 2 * node + (ctx.get(d) ? 1 : 0);
+            int next = child[slot];
+            if (next == 0) {
+                next = newNode();
+                child[slot] = next;
+            }
+            node = next;
+            bump(node, t);
+        }
+    }
+
+    /** Times {@code p} (oldest dot first) was directly followed by T. */
+    public int followedByT(History p) {
+        int node = find(p);
+        return node < 0 ? 0 : countT[node];
+    }
+
+    /** Times {@code p} was directly followed by X. */
+    public int followedByX(History p) {
+        int node = find(p);
+        return node < 0 ? 0 : countX[node];
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    /** Approximate heap used by the trie arrays. */
+    public long getBytes() {
+        return 4L * (child.length + countT.length + countX.length);
+    }
+
+    private int find(History p) {
+        if (p.length() > maxDepth) {
+            throw new IllegalArgumentException("pattern longer than index depth " + maxDepth + ": " + p.length());
+        }
+        int node = 0, bits = p.bits();
+        // dot mới nhất = bit 0
+        for (int d = 0; d < p.length() && node >= 0; d++) {
+            int next = child[2 * node + ((bits >>> d) & 1)];
+            node = (next == 0) ? -1 : next;
+        }
+        return node;
+    }
+
+    private void bump(int node, boolean t) {
+        if (t) {
+            countT[node]++;
+        } else {
+            countX[node]++;
+        }
+    }
+
+    private int newNode() {
+        if (nodes == countT.length) {
+            int cap = nodes * 2;
+            child = Arrays.copyOf(child, 2 * cap);
+            countT = Arrays.copyOf(countT, cap);
+            countX = Arrays.copyOf(countX, cap);
+        }
+        return nodes++;
+    }
+
+    /** Context đọc ngược: get(0) = dot ngay trước outcome. */
+    interface Context {
+        boolean get(int back);
+    }
+}
@@ -0,0 +1,52 @@
+package model;
+
+/**
+ * Pick codes shared by the predictors.  The indices are the ones
+ * {@code predict.py} maps its argmax to: 0=TAI, 1=XIU, 2=SKIP.
+ */
+final class Picks {
+
+    static final int TAI = 0, XIU = 1, SKIP = 2;
+    static final String[] NAMES = {"TAI", "XIU", "SKIP"};
+    private static final String[] JSON = {"{\"pick\":\"TAI\"}", "{\"pick\":\"XIU\"}", "{\"pick\":\"SKIP\"}"};
+
+    private Picks() {
+    }
+
+    /** Pre-built {"pick":...} answer; no allocation per call. */
+    static String json(int pick) {
+        return JSON[(pick >= TAI && pick <= SKIP) ? pick : SKIP];
+    }
+
+    /** Pick index of a {"pick":...} answer, SKIP if it cannot be read. */
+    static int index(String answerJson) {
+        String p = stringField(answerJson, "pick");
+        if (p == null) {
+            return SKIP;
+        }
+        return switch (p.trim().toUpperCase()) {
+            case "TAI" -> TAI;
+            case "XIU" -> XIU;
+            default -> SKIP;
+        };
+    }
+
+    // Lấy giá trị "key":"..." mà không cần parse cả JSON
+    static String stringField(String json, String key) {
+        if (json == null) {
+            return null;
+        }
+        int k = json.indexOf("\"" + key + "\"");
+        if (k < 0) {
+            return null;
+        }
+        int q1 = json.indexOf('"', json.indexOf(':', k + key.length() + 2) + 1);
+        int q2 = (q1 >= 0) ? json.indexOf('"', q1 + 1) : -1;
+        return (q2 > q1) ? json.substring(q1 + 1, q2) : null;
+    }
+
+    /** T/X string for {@code bits} (T=1, oldest dot in the highest of {@code length} bits). */
+    static String history(int bits, int length) {
+        return History.of(bits, length).toString();
+    }
+}
@@ -0,0 +1,372 @@
+package model;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One warm {@link Predictor} shared by every process on the host through a
+ * Unix domain socket, so scanners and scripts no longer start a model (or a
+ * Python worker) each.
+ *
+ * Binary protocol, big-endian.  On connect the server sends a 12-byte hello
+ * (int {@link #MAGIC}, int {@link #VERSION}, int flags: {@link #FLAG_RETRY_ON_SKIP}
+ * when the served predictor's {@link Predictor#retryOnSkip()} is true).  Then:
+ * <ul>
+ *   <li>request, 9 bytes: int id, byte length (0..31), int bits (the
+ *       {@link History} layout: T=1, oldest dot in the highest bit)</li>
+ *   <li>response, 5 bytes: int id, byte pick (0=TAI, 1=XIU, 2=SKIP)</li>
+ * </ul>
+ * Clients may pipeline; a connection gets its responses in request order.
+ * A malformed request closes that connection.
+ *
+ * A single selector thread reads every connection that has data and turns
+ * all complete requests into one batch (up to {@code maxBatch}), answered
+ * with one {@link Predictor#pickBatch} call.  While the model runs, new
+ * requests wait in the socket buffers and become the next batch, so batches
+ * grow with load on their own and an idle server adds no waiting.
+ * {@link Predictor#observe} is not forwarded: the clients may be different
+ * tables, and one online model must not learn from all of them mixed.
+ */
+public final class PredictionServer implements AutoCloseable {
+
+    public static final int MAGIC = 0x53425053; // "SBPS"
+    public static final int VERSION = 2;
+    public static final int FLAG_RETRY_ON_SKIP = 1;
+    public static final int DEFAULT_MAX_BATCH = 1024;
+    static final int HELLO_BYTES = 12, REQUEST_BYTES = 9, RESPONSE_BYTES = 5;
+    // client không đọc response mà vẫn gửi tiếp -> cắt kết nối thay vì giữ RAM mãi
+    private static final int MAX_PENDING_OUT = 1 << 20;
+
+    private final Predictor predictor;
+    private final Path path;
+    private final int maxBatch;
+    private final int flags;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // ===== BATCH ĐANG GOM (chỉ thread server) =====
+    private final History[] batch;
+    private final int[] ids;
+    private final Conn[] owner;
+    private final byte[] picks;
+    private int size;
+    private final ArrayDeque<Conn> backlog = new ArrayDeque<>();   // còn request nguyên vẹn chưa vào batch
+    private final List<Conn> touched = new ArrayList<>();
+
+    // ===== THỐNG KÊ =====
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+    private volatile int largestBatch;
+
+    private PredictionServer(Predictor predictor, Path path, int maxBatch) throws IOException {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be >= 1");
+        }
+        this.predictor = predictor;
+        this.path = path;
+        this.maxBatch = maxBatch;
+        this.flags = predictor.retryOnSkip() ? FLAG_RETRY_ON_SKIP : 0;
+        this.batch = new History[maxBatch];
+        this.ids = new int[maxBatch];
+        this.owner = new Conn[maxBatch];
+        this.picks = new byte[maxBatch];
+
+        removeStaleSocket(path);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        server.configureBlocking(false);
+        selector = Selector.open();
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::loop, "prediction-server");
+    }
+
+    /** Binds {@code path} and starts serving {@code predictor} on its own thread. */
+    public static PredictionServer start(Predictor predictor, Path path, int maxBatch) throws IOException {
+        PredictionServer s = new PredictionServer(predictor, path, maxBatch);
+        s.thread.start();
+        return s;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getConnections() {
+        return connections.sum();
+    }
+
+    public int getLargestBatch() {
+        return largestBatch;
+    }
+
+    public String stats() {
+        long r = getRequests(), b = getBatches();
+        return String.format("requests=%d batches=%d avgBatch=%.2f largestBatch=%d connections=%d",
+                r, b, b == 0 ? 0.0 : (double) r / b, largestBatch, getConnections());
+    }
+
+    /** Waits for the server thread (it only ends on {@link #close()}). */
+    public void join() throws InterruptedException {
+        thread.join();
+    }
+
+    /** Stops serving, closes every connection and removes the socket file. The predictor stays open. */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==================== selector thread ======================
+    private void loop() {
+        try {
+            while (running) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Conn c = (Conn) key.attachment();
+                    if (key.isWritable()) {
+                        flush(c);
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        read(c);
+                    }
+                }
+                selector.selectedKeys().clear();
+                // quá maxBatch: phần còn lại ở backlog, trả lời tiếp trước khi select lại
+                while (size > 0) {
+                    evaluate();
+                    while (size < maxBatch && !backlog.isEmpty()) {
+                        parse(backlog.poll());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[ERROR] prediction server stopped: " + e.getMessage());
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void accept() {
+        SocketChannel ch = null;
+        try {
+            ch = server.accept();
+            if (ch == null) {
+                return;
+            }
+            ch.configureBlocking(false);
+            Conn c = new Conn(ch);
+            c.key = ch.register(selector, SelectionKey.OP_READ, c);
+            c.out.putInt(MAGIC).putInt(VERSION).putInt(flags);
+            flush(c);
+            connections.increment();
+        } catch (IOException e) {
+            // 1 client hỏng không được làm dừng server
+            if (ch != null) {
+                try {
+                    ch.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void read(Conn c) {
+        try {
+            if (!c.in.hasRemaining()) {
+                return; // buffer đầy = đang chờ ở backlog
+            }
+            if (c.ch.read(c.in) < 0) {
+                drop(c);
+                return;
+            }
+        } catch (IOException e) {
+            drop(c);
+            return;
+        }
+        if (size < maxBatch) {
+            parse(c);
+        } else if (!c.queued) {
+            c.queued = true;
+            backlog.add(c);
+        }
+    }
+
+    // đưa request nguyên vẹn trong c.in vào batch; hết chỗ thì c vào backlog
+    private void parse(Conn c) {
+        c.queued = false;
+        if (!c.ch.isOpen()) {
+            return;
+        }
+        ByteBuffer in = c.in.flip();
+        while (in.remaining() >= REQUEST_BYTES && size < maxBatch) {
+            int id = in.getInt();
+            int len = in.get();
+            int bits = in.getInt();
+            if (len < 0 || len > History.MAX_LENGTH) {
+                in.clear();
+                drop(c);
+                return;
+            }
+            batch[size] = History.of(bits, len);
+            ids[size] = id;
+            owner[size] = c;
+            size++;
+        }
+        if (in.remaining() >= REQUEST_BYTES) {
+            c.queued = true;
+            backlog.add(c);
+        }
+        in.compact();
+    }
+
+    private void evaluate() {
+        int n = size;
+        try {
+            predictor.pickBatch(batch, n, picks);
+        } catch (RuntimeException e) {
+            Arrays.fill(picks, 0, n, (byte) Picks.SKIP);
+        }
+        requests.add(n);
+        batches.increment();
+        if (n > largestBatch) {
+            largestBatch = n;
+        }
+        for (int i = 0; i < n; i++) {
+            Conn c = owner[i];
+            batch[i] = null;
+            owner[i] = null;
+            if (!c.ch.isOpen()) {
+                continue;
+            }
+            if (c.out.remaining() < RESPONSE_BYTES) {
+                c.grow();
+            }
+            c.out.putInt(ids[i]).put(picks[i]);
+            if (!c.touched) {
+                c.touched = true;
+                touched.add(c);
+            }
+        }
+        size = 0;
+        for (Conn c : touched) {
+            c.touched = false;
+            flush(c);
+        }
+        touched.clear();
+    }
+
+    private void flush(Conn c) {
+        if (!c.ch.isOpen()) {
+            return;
+        }
+        try {
+            c.out.flip();
+            c.ch.write(c.out);
+            c.out.compact();
+        } catch (IOException e) {
+            drop(c);
+            return;
+        }
+        if (c.out.position() > MAX_PENDING_OUT) {
+            drop(c);
+        } else if (c.key.isValid()) {
+            c.key.interestOps(c.out.position() > 0
+                    ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+
+    private void drop(Conn c) {
+        c.key.cancel();
+        try {
+            c.ch.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void shutdown() {
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException ignored) {
+            }
+        }
+        try {
+            selector.close();
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // file socket còn lại từ lần chạy trước bị kill: xoá; có server khác đang nghe thì báo lỗi
+    private static void removeStaleSocket(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        boolean live;
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(path)).close();
+            live = true;
+        } catch (IOException e) {
+            live = false;
+        }
+        if (live) {
+            throw new IOException("a server is already listening on " + path);
+        }
+        Files.delete(path);
+    }
+
+    private static final class Conn {
+        final SocketChannel ch;
+        final ByteBuffer in = ByteBuffer.allocate(REQUEST_BYTES * 256);
+        ByteBuffer out = ByteBuffer.allocate(RESPONSE_BYTES * 256);
+        SelectionKey key;
+        boolean queued, touched;
+
+        Conn(SocketChannel ch) {
+            this.ch = ch;
+        }
+
+        void grow() {
+            ByteBuffer bigger = ByteBuffer.allocate(out.capacity() * 2);
+            out.flip();
+            out = bigger.put(out);
+        }
+    }
+}
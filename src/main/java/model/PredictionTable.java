@@ -0,0 +1,178 @@
+package model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * Every possible answer of a predictor, precomputed.  The scanner only ever
+ * sends {@code length} T/X dots, so there are 2^length inputs; they are
+ * evaluated once (one {@link Predictor#pickAll} call) and stored 2 bits per
+ * entry.  A lookup is then a shift and a mask.
+ *
+ * The table is cached next to the model as {@code <model>.picks}, tagged
+ * with the model file's size and CRC32; a changed model rebuilds it.
+ */
+public final class PredictionTable implements Predictor {
+
+    private static final int MAGIC = 0x53425054; // "SBPT"
+    private static final int VERSION = 1;
+
+    private final int length;
+    private final byte[] packed; // 4 picks per byte, entry i at bits 2*(i&3)
+
+    private PredictionTable(int length, byte[] packed) {
+        this.length = length;
+        this.packed = packed;
+    }
+
+    /**
+     * Loads the cached table for {@code modelPath}, or builds it with
+     * {@code source} and writes the cache when it is missing or stale.
+     */
+    public static PredictionTable loadOrBuild(Predictor source, Path modelPath, int length) throws IOException {
+        Path cache = modelPath.resolveSibling(modelPath.getFileName() + ".picks");
+        long size = Files.size(modelPath);
+        long crc = crc32(modelPath);
+        PredictionTable table = read(cache, length, size, crc);
+        if (table != null) {
+            return table;
+        }
+        table = of(length, source.pickAll(length));
+        // Toàn SKIP = model không chạy được (vd. thiếu TF) -> không lưu cache
+        if (!table.allSkip()) {
+            table.write(cache, size, crc);
+        }
+        return table;
+    }
+
+    /** Packs one pick index per history (as returned by {@link Predictor#pickAll}). */
+    public static PredictionTable of(int length, byte[] picks) {
+        if (length < 1 || length > 24 || picks.length != 1 << length) {
+            throw new IllegalArgumentException("need 2^length picks, length in 1..24");
+        }
+        byte[] packed = new byte[(picks.length + 3) >>> 2];
+        for (int i = 0; i < picks.length; i++) {
+            int p = (picks[i] >= Picks.TAI && picks[i] <= Picks.SKIP) ? picks[i] : Picks.SKIP;
+            packed[i >>> 2] |= (byte) (p << ((i & 3) << 1));
+        }
+        return new PredictionTable(length, packed);
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /** Pick index (0=TAI, 1=XIU, 2=SKIP) for a history bitmask. */
+    public int pick(int bits) {
+        int i = bits & ((1 << length) - 1);
+        return (packed[i >>> 2] >>> ((i & 3) << 1)) & 3;
+    }
+
+    /** Pick index for a history; SKIP if it is not {@link #getLength()} dots long. */
+    public int pick(History history) {
+        return (history.length() == length) ? pick(history.bits()) : Picks.SKIP;
+    }
+
+    @Override
+    public String getAnswer(String inputJson) {
+        String tx = Picks.stringField(inputJson, "history");
+        return Picks.json(tx == null ? Picks.SKIP : pick(History.parse(tx)));
+    }
+
+    @Override
+    public String getAnswer(History history) {
+        return Picks.json(pick(history));
+    }
+
+    @Override
+    public boolean canStall() {
+        return false;
+    }
+
+    @Override
+    public boolean retryOnSkip() {
+        // tra bảng -> hỏi lại vẫn ra đúng kèo đó
+        return false;
+    }
+
+    @Override
+    public byte[] pickAll(int length) {
+        if (length != this.length) {
+            return Predictor.super.pickAll(length);
+        }
+        byte[] out = new byte[1 << length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (byte) pick(i);
+        }
+        return out;
+    }
+
+    // ==================== cache file ======================
+    private boolean allSkip() {
+        for (int i = 0; i < 1 << length; i++) {
+            if (pick(i) != Picks.SKIP) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // mã 3 không phải pick nào: cache hỏng hoặc của định dạng khác -> build lại
+    private boolean valid() {
+        for (int i = 0; i < 1 << length; i++) {
+            if (pick(i) > Picks.SKIP) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static PredictionTable read(Path cache, int length, long modelSize, long modelCrc) {
+        if (!Files.isRegularFile(cache)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(cache))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != length
+                    || in.readLong() != modelSize || in.readLong() != modelCrc) {
+                return null;
+            }
+            byte[] packed = new byte[((1 << length) + 3) >>> 2];
+            in.readFully(packed);
+            PredictionTable table = new PredictionTable(length, packed);
+            return table.valid() ? table : null;
+        } catch (IOException e) {
+            return null; // hỏng/cụt -> build lại
+        }
+    }
+
+    private void write(Path cache, long modelSize, long modelCrc) throws IOException {
+        Path tmp = cache.resolveSibling(cache.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(length);
+            out.writeLong(modelSize);
+            out.writeLong(modelCrc);
+            out.write(packed);
+        }
+        Files.move(tmp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long crc32(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                crc.update(buf, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+}
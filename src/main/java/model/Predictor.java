@@ -0,0 +1,89 @@
+package model;
+
+/**
+ * Anything that can answer a pick request.  The contract is the one the
+ * Python helper has always used: the input is a JSON string with a field
+ * "history" (T/X characters, oldest first) and the output is a JSON string
+ * {@code {"pick":"TAI|XIU|SKIP"}}.  Implementations never throw; on any
+ * failure they answer SKIP.
+ */
+public interface Predictor extends AutoCloseable {
+
+    String getAnswer(String inputJson);
+
+    /**
+     * Same as {@link #getAnswer(String)} for a packed history.  Predictors
+     * that can read the bits directly override this and skip the JSON.
+     */
+    default String getAnswer(History history) {
+        return getAnswer("{\"history\":\"" + history + "\"}");
+    }
+
+    /**
+     * Pick index (0=TAI, 1=XIU, 2=SKIP) for every history of {@code length}
+     * dots, indexed by bitmask: T=1, oldest dot in the highest bit.  The
+     * default asks one history at a time; predictors that can evaluate the
+     * whole batch in one model call override it.
+     */
+    default byte[] pickAll(int length) {
+        byte[] out = new byte[1 << length];
+        for (int bits = 0; bits < out.length; bits++) {
+            out[bits] = (byte) Picks.index(getAnswer("{\"history\":\"" + Picks.history(bits, length) + "\"}"));
+        }
+        return out;
+    }
+
+    /**
+     * Pick index for each of the first {@code n} histories (any lengths),
+     * written to {@code out[0..n)}.  The default asks one history at a
+     * time; predictors behind a model call override it so that one call
+     * answers the whole batch ({@link PredictionServer} coalesces
+     * concurrent clients into such batches).
+     */
+    default void pickBatch(History[] histories, int n, byte[] out) {
+        for (int i = 0; i < n; i++) {
+            int p;
+            try {
+                p = Picks.index(getAnswer(histories[i]));
+            } catch (RuntimeException e) {
+                p = Picks.SKIP;
+            }
+            out[i] = (byte) p;
+        }
+    }
+
+    /**
+     * Called once per settled round with the history the pick was made from
+     * and the outcome that followed, so online predictors can learn from the
+     * live table.  Fixed models ignore it.
+     */
+    default void observe(History history, boolean nextIsT) {
+    }
+
+    /**
+     * True when an answer can take arbitrarily long (another process, a
+     * remote service), so callers should guard it with a timeout.
+     * In-process predictors return false and are called directly.
+     */
+    default boolean canStall() {
+        return true;
+    }
+
+    /**
+     * True when asking again after a SKIP can give a different answer, so
+     * callers may spend one retry on it.  Predictors that already bound
+     * their own decision (an ensemble with a deadline) and deterministic
+     * ones (same history, same pick) return false.
+     */
+    default boolean retryOnSkip() {
+        return true;
+    }
+
+    /** Loads whatever the predictor needs before the first real round. */
+    default void warmUp() {
+    }
+
+    @Override
+    default void close() {
+    }
+}
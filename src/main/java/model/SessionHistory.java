@@ -0,0 +1,134 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The whole T/X sequence of a session, rebuilt from the successive 13-dot
+ * windows the scanner confirms.
+ *
+ * Each new window is overlap-matched against the previous one: if the
+ * last 13-k dots of the old window equal the first 13-k dots of the new
+ * one, the new window is the old one scrolled by k and only its last k
+ * dots are appended.  k = 1 is the normal case; the smallest matching k is
+ * taken, so a missed round or two still stitches.  When nothing matches
+ * (table switched, misread) a new segment starts with the whole window,
+ * and no pattern spans the break.
+ *
+ * Dots are stored bit-packed and append-only, 64 per long (T = 1, dot i in
+ * bit i % 64 of word i / 64); every appended dot also updates a
+ * {@link PatternIndex}, so "how often was P followed by T" is answered in
+ * O(|P|) at any session length.
+ *
+ * Not thread-safe: one instance per table, used from its Statistic.
+ */
+public final class SessionHistory {
+
+    /** Depth of the pattern index: patterns up to 16 dots. */
+    public static final int DEFAULT_DEPTH = 16;
+
+    private long[] words = new long[64];
+    private long length;
+    private long[] segmentStarts = new long[8];
+    private int segments;
+    private final PatternIndex index;
+    // context đọc ngược từ dot cuối cùng, không cấp phát mỗi lần thêm
+    private final PatternIndex.Context back = d -> get(length - 1 - d);
+
+    public SessionHistory() {
+        this(DEFAULT_DEPTH);
+    }
+
+    public SessionHistory(int indexDepth) {
+        this.index = new PatternIndex(indexDepth);
+    }
+
+    /**
+     * Stitches the newly confirmed window {@code next} after {@code prev}
+     * (null = first window of the session).  Returns how many dots were
+     * appended to the current segment, or -1 when a new segment was
+     * started with the whole window.
+     */
+    public int stitch(History prev, History next) {
+        int len = next.length();
+        if (prev != null && prev.length() == len) {
+            if (prev.bits() == next.bits()) {
+                return 0;
+            }
+            for (int k = 1; k < len; k++) {
+                int keep = len - k;
+                int mask = (1 << keep) - 1;
+                if ((prev.bits() & mask) == (next.bits() >>> k)) {
+                    for (int i = k - 1; i >= 0; i--) {
+                        append(((next.bits() >>> i) & 1) != 0);
+                    }
+                    return k;
+                }
+            }
+        }
+        startSegment();
+        for (int i = len - 1; i >= 0; i--) {
+            append(((next.bits() >>> i) & 1) != 0);
+        }
+        return -1;
+    }
+
+    /** Appends one dot to the current segment (starts one if there is none). */
+    public void append(boolean t) {
+        if (segments == 0) {
+            startSegment();
+        }
+        int ctxLen = (int) Math.min(Integer.MAX_VALUE, length - segmentStarts[segments - 1]);
+        index.add(t, back, ctxLen);
+        int w = (int) (length >>> 6);
+        if (w == words.length) {
+            words = Arrays.copyOf(words, w * 2);
+        }
+        if (t) {
+            words[w] |= 1L << length;
+        }
+        length++;
+    }
+
+    /** Dot {@code i} (0 = first of the session). */
+    public boolean get(long i) {
+        if (i < 0 || i >= length) {
+            throw new IndexOutOfBoundsException(i + " / " + length);
+        }
+        return (words[(int) (i >>> 6)] >>> i & 1L) != 0;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    /** Last {@code n} dots of the current segment (fewer if it is shorter). */
+    public History tail(int n) {
+        long from = Math.max(segments == 0 ? length : segmentStarts[segments - 1],
+                length - Math.min(n, History.MAX_LENGTH));
+        int bits = 0;
+        for (long i = from; i < length; i++) {
+            bits = (bits << 1) | (get(i) ? 1 : 0);
+        }
+        return History.of(bits, (int) (length - from));
+    }
+
+    public PatternIndex getIndex() {
+        return index;
+    }
+
+    /** Approximate heap used: packed dots + index. */
+    public long getBytes() {
+        return 8L * (words.length + segmentStarts.length) + index.getBytes();
+    }
+
+    private void startSegment() {
+        if (segments == segmentStarts.length) {
+            segmentStarts = Arrays.copyOf(segmentStarts, segments * 2);
+        }
+        segmentStarts[segments++] = length;
+    }
+}
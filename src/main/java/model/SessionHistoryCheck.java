@@ -0,0 +1,139 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * Self-check of {@link SessionHistory} and {@link PatternIndex}, run in the
+ * test phase (pom.xml, execution session-history-check):
+ * <ul>
+ *   <li>a 1M-dot session replayed as overlapping 13-dot windows, as the
+ *       scanner confirms them, stitches back to exactly the original
+ *       sequence, also when one round in 1000 is missed;</li>
+ *   <li>the index counts of patterns of 1..16 dots match a brute-force
+ *       scan of the stitched sequence;</li>
+ *   <li>a window that does not overlap starts a new segment.</li>
+ * </ul>
+ *
+ *     java -cp target/classes model.SessionHistoryCheck [dots] [seed]
+ *
+ * Exits 1 on the first failed check.
+ */
+final class SessionHistoryCheck {
+
+    private static final int WINDOW = 13;
+
+    private SessionHistoryCheck() {
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        boolean[] seq = sequence(n, new Random(seed));
+
+        boolean ok = replay(seq, 0) && replay(seq, 1000) && counts(seq, new Random(seed + 1)) && newSegment();
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    // bảng thật không ra quá 13 dot giống nhau liên tiếp -> cửa sổ kề nhau luôn khớp k nhỏ nhất đúng
+    private static boolean[] sequence(int n, Random rnd) {
+        boolean[] seq = new boolean[n];
+        int run = 0;
+        for (int i = 0; i < n; i++) {
+            seq[i] = rnd.nextBoolean();
+            run = (i > 0 && seq[i] == seq[i - 1]) ? run + 1 : 1;
+            if (run > WINDOW) {
+                seq[i] = !seq[i];
+                run = 1;
+            }
+        }
+        return seq;
+    }
+
+    private static SessionHistory stitchAll(boolean[] seq, int missEvery) {
+        SessionHistory s = new SessionHistory();
+        History prev = null;
+        int bits = 0;
+        for (int i = 0; i < seq.length; i++) {
+            bits = ((bits << 1) | (seq[i] ? 1 : 0)) & ((1 << WINDOW) - 1);
+            if (i < WINDOW - 1 || (missEvery > 0 && i % missEvery == missEvery / 2)) {
+                continue; // chưa đủ 13 dot / ván bị bỏ sót
+            }
+            History h = History.of(bits, WINDOW);
+            s.stitch(prev, h);
+            prev = h;
+        }
+        return s;
+    }
+
+    private static boolean replay(boolean[] seq, int missEvery) {
+        long t0 = System.nanoTime();
+        SessionHistory s = stitchAll(seq, missEvery);
+        double nsPerWindow = (System.nanoTime() - t0) / (double) seq.length;
+        long mismatches = 0;
+        for (int i = 0; i < Math.min(seq.length, s.length()); i++) {
+            if (s.get(i) != seq[i]) {
+                mismatches++;
+            }
+        }
+        boolean ok = s.length() == seq.length && s.getSegments() == 1 && mismatches == 0;
+        System.out.printf("%s replay %d dots (missing 1 round in %s): length=%d segments=%d mismatches=%d, %.0f ns/window%n",
+                ok ? "[OK]" : "[FAIL]", seq.length, missEvery == 0 ? "none" : missEvery,
+                s.length(), s.getSegments(), mismatches, nsPerWindow);
+        return ok;
+    }
+
+    private static boolean counts(boolean[] seq, Random rnd) {
+        SessionHistory s = stitchAll(seq, 0);
+        PatternIndex index = s.getIndex();
+        int checked = 0;
+        for (int len = 1; len <= index.getMaxDepth(); len++) {
+            for (int r = 0; r < 4; r++) {
+                // pattern lấy từ chính chuỗi để đa số có đếm > 0
+                int at = rnd.nextInt(seq.length - len);
+                int bits = 0;
+                for (int d = 0; d < len; d++) {
+                    bits = (bits << 1) | (seq[at + d] ? 1 : 0);
+                }
+                History p = History.of(bits, len);
+                int t = 0, x = 0;
+                for (int i = len; i < seq.length; i++) {
+                    boolean match = true;
+                    for (int d = 0; d < len && match; d++) {
+                        match = seq[i - len + d] == p.isT(d);
+                    }
+                    if (match) {
+                        if (seq[i]) {
+                            t++;
+                        } else {
+                            x++;
+                        }
+                    }
+                }
+                if (index.followedByT(p) != t || index.followedByX(p) != x) {
+                    System.out.printf("[FAIL] %s: index T=%d X=%d, scan T=%d X=%d%n",
+                            p, index.followedByT(p), index.followedByX(p), t, x);
+                    return false;
+                }
+                checked++;
+            }
+        }
+        System.out.printf("[OK] index counts of %d patterns (1..%d dots) match a brute-force scan%n",
+                checked, index.getMaxDepth());
+        return true;
+    }
+
+    private static boolean newSegment() {
+        SessionHistory s = new SessionHistory();
+        History a = History.parse("TTTTTTTTTTTTT"), b = History.parse("XXXXXXXXXXXXX");
+        s.stitch(null, a);
+        int k = s.stitch(a, b);
+        // không pattern nào được vắt qua chỗ gãy: sau T chỉ có T trong segment đầu
+        boolean ok = k == -1 && s.getSegments() == 2 && s.length() == 2 * WINDOW
+                && s.getIndex().followedByX(History.parse("T")) == 0;
+        System.out.printf("%s non-overlapping window starts a new segment (k=%d segments=%d)%n",
+                ok ? "[OK]" : "[FAIL]", k, s.getSegments());
+        return ok;
+    }
+}
@@ -0,0 +1,278 @@
+package model;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client of a {@link PredictionServer}: picks come from the model another
+ * process keeps warm, over its Unix domain socket.
+ *
+ * One connection, opened on first use and reopened once after an error
+ * (server restarted).  Several histories ({@link #pickBatch},
+ * {@link #pickAll}) are pipelined in chunks, so the server sees them
+ * together and answers them in as few model calls as it can.  When the
+ * server cannot be reached the answer is SKIP, like {@link LLM}.
+ *
+ * Every exchange runs under a deadline (non-blocking channel + selector):
+ * a server stuck on a slow backend makes that call answer SKIP and drops
+ * the connection, instead of holding this client's lock for every later
+ * round.  A late response can then never be mistaken for a newer one.
+ */
+public final class SocketPredictor implements Predictor {
+
+    private static final int CHUNK = 256;
+    /** Deadline of one exchange (one chunk), as {@link LLM#DEFAULT_TIMEOUT_MS}. */
+    public static final long DEFAULT_TIMEOUT_MS = LLM.DEFAULT_TIMEOUT_MS;
+
+    private final UnixDomainSocketAddress address;
+    private final long timeoutNanos;
+
+    // Connection state, guarded by this
+    private SocketChannel ch;
+    private Selector selector;
+    private int serverFlags = PredictionServer.FLAG_RETRY_ON_SKIP;
+    private final ByteBuffer req = ByteBuffer.allocateDirect(CHUNK * PredictionServer.REQUEST_BYTES);
+    private final ByteBuffer resp = ByteBuffer.allocateDirect(CHUNK * PredictionServer.RESPONSE_BYTES);
+    private final History[] one = new History[1];
+    private final byte[] onePick = new byte[1];
+    private int nextId;
+    private int reconnects;
+    private int timeouts;
+
+    public SocketPredictor(Path socket) {
+        this(socket, DEFAULT_TIMEOUT_MS);
+    }
+
+    public SocketPredictor(Path socket, long timeoutMs) {
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("timeoutMs must be > 0");
+        }
+        this.address = UnixDomainSocketAddress.of(socket);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    }
+
+    /** Pick index (0=TAI, 1=XIU, 2=SKIP) for a history. */
+    public synchronized int pick(History history) {
+        one[0] = history;
+        pickBatch(one, 1, onePick);
+        one[0] = null;
+        return onePick[0];
+    }
+
+    @Override
+    public String getAnswer(String inputJson) {
+        try {
+            String history = Picks.stringField(inputJson, "history");
+            return Picks.json(history == null ? Picks.SKIP : pick(History.parse(history)));
+        } catch (RuntimeException e) {
+            return Picks.json(Picks.SKIP);
+        }
+    }
+
+    @Override
+    public String getAnswer(History history) {
+        return Picks.json(pick(history));
+    }
+
+    @Override
+    public synchronized void pickBatch(History[] histories, int n, byte[] out) {
+        for (int from = 0; from < n; from += CHUNK) {
+            int k = Math.min(CHUNK, n - from);
+            // 2 lần thử: server restart giữa chừng -> kết nối lại và gửi lại cả chunk;
+            // hết deadline thì không thử lại, vòng này đã chờ đủ
+            boolean ok = false;
+            for (int attempt = 0; attempt < 2 && !ok; attempt++) {
+                try {
+                    exchange(histories, from, k, out);
+                    ok = true;
+                } catch (SocketTimeoutException e) {
+                    timeouts++;
+                    disconnect();
+                    break;
+                } catch (IOException | RuntimeException e) {
+                    disconnect();
+                }
+            }
+            if (!ok) {
+                Arrays.fill(out, from, n, (byte) Picks.SKIP);
+                return;
+            }
+        }
+    }
+
+    /** Every history of {@code length} dots, pipelined through the server. */
+    @Override
+    public byte[] pickAll(int length) {
+        History[] all = new History[1 << length];
+        for (int bits = 0; bits < all.length; bits++) {
+            all[bits] = History.of(bits, length);
+        }
+        byte[] out = new byte[all.length];
+        pickBatch(all, all.length, out);
+        return out;
+    }
+
+    /** Connects now, so the first real round does not pay for it. */
+    @Override
+    public synchronized void warmUp() {
+        try {
+            ensureConnected();
+        } catch (IOException e) {
+            disconnect();
+        }
+    }
+
+    /**
+     * What the server's predictor says (sent in its hello); true while the
+     * server cannot be reached, as for any predictor.
+     */
+    @Override
+    public synchronized boolean retryOnSkip() {
+        try {
+            ensureConnected();
+        } catch (IOException e) {
+            disconnect();
+        }
+        return (serverFlags & PredictionServer.FLAG_RETRY_ON_SKIP) != 0;
+    }
+
+    /** Exchanges that missed the deadline (each one dropped the connection). */
+    public synchronized int getTimeouts() {
+        return timeouts;
+    }
+
+    /** Number of times the connection had to be reopened after the first one. */
+    public synchronized int getReconnects() {
+        return reconnects;
+    }
+
+    @Override
+    public synchronized void close() {
+        disconnect();
+    }
+
+    // ==================== wire ======================
+    private void exchange(History[] histories, int from, int k, byte[] out) throws IOException {
+        ensureConnected();
+        long deadline = System.nanoTime() + timeoutNanos;
+        int first = nextId;
+        req.clear();
+        for (int i = 0; i < k; i++) {
+            History h = histories[from + i];
+            req.putInt(nextId++).put((byte) h.length()).putInt(h.bits());
+        }
+        req.flip();
+        writeFully(req, deadline);
+        resp.clear().limit(k * PredictionServer.RESPONSE_BYTES);
+        readFully(resp, deadline);
+        resp.flip();
+        for (int i = 0; i < k; i++) {
+            int id = resp.getInt();
+            int p = resp.get();
+            if (id != first + i) {
+                throw new IOException("out of order response " + id + ", expected " + (first + i));
+            }
+            out[from + i] = (byte) ((p >= Picks.TAI && p <= Picks.SKIP) ? p : Picks.SKIP);
+        }
+    }
+
+    private void ensureConnected() throws IOException {
+        if (ch != null) {
+            return;
+        }
+        SocketChannel c = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            c.connect(address); // UDS: nối ngay hoặc lỗi ngay
+            c.configureBlocking(false);
+            ch = c;
+            selector = Selector.open();
+            c.register(selector, 0);
+            ByteBuffer hello = ByteBuffer.allocate(PredictionServer.HELLO_BYTES);
+            readFully(hello, System.nanoTime() + timeoutNanos);
+            hello.flip();
+            int magic = hello.getInt(), version = hello.getInt();
+            if (magic != PredictionServer.MAGIC || version != PredictionServer.VERSION) {
+                throw new IOException("not a prediction server (or another version) at " + address);
+            }
+            serverFlags = hello.getInt();
+        } catch (IOException e) {
+            disconnect();
+            c.close();
+            throw e;
+        }
+        if (nextId != 0) {
+            reconnects++;
+        }
+    }
+
+    private void writeFully(ByteBuffer b, long deadline) throws IOException {
+        while (true) {
+            ch.write(b);
+            if (!b.hasRemaining()) {
+                return;
+            }
+            await(SelectionKey.OP_WRITE, deadline);
+        }
+    }
+
+    private void readFully(ByteBuffer b, long deadline) throws IOException {
+        while (b.hasRemaining()) {
+            int n = ch.read(b);
+            if (n < 0) {
+                throw new IOException("server closed the connection");
+            }
+            if (n == 0) {
+                await(SelectionKey.OP_READ, deadline);
+            }
+        }
+    }
+
+    // chờ channel sẵn sàng tới deadline; quá hạn -> SocketTimeoutException
+    private void await(int op, long deadline) throws IOException {
+        SelectionKey key = ch.keyFor(selector);
+        key.interestOps(op);
+        try {
+            while (true) {
+                long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (left <= 0) {
+                    throw new SocketTimeoutException("no answer from " + address + " within the deadline");
+                }
+                if (selector.select(left) > 0) {
+                    selector.selectedKeys().clear();
+                    return;
+                }
+            }
+        } finally {
+            if (key.isValid()) {
+                key.interestOps(0);
+            }
+        }
+    }
+
+    private void disconnect() {
+        if (selector != null) {
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+            selector = null;
+        }
+        if (ch == null) {
+            return;
+        }
+        try {
+            ch.close();
+        } catch (IOException ignored) {
+        }
+        ch = null;
+    }
+}
@@ -0,0 +1,59 @@
+"""Writes the KerasEngine parity fixture: raw model outputs for a fixed set
+of histories, one per line ("<T/X history> <out0> <out1> ..."), next to
+the model as sicbo_core.keras.parity.
+
+    python parity_fixture.py [model.keras] [out]
+
+The outputs are recorded through predict.py itself ({"history":..,"raw":true}),
+so the fixture holds exactly what the production helper computes: the same
+input encoding, the same loaded Keras model.  Needs TensorFlow; the header
+says source=tensorflow and KerasEngine.main rejects any other source.
+"""
+import json, os, random, sys
+
+HERE = os.path.dirname(os.path.abspath(__file__))
+MODEL_PATH = os.path.join(HERE, 'sicbo_core.keras')
+
+
+def histories():
+    # Cố định: seed + độ dài; đổi ở đây thì phải sinh lại fixture
+    rnd = random.Random(42)
+    out = ['T', 'X', 'T' * 13, 'X' * 13, 'TX' * 6 + 'T']
+    for n in (1, 5, 10, 13, 13, 13, 16, 20):
+        for _ in range(8):
+            out.append(''.join(rnd.choice('TX') for _ in range(n)))
+    return out
+
+
+def main():
+    path = sys.argv[1] if len(sys.argv) > 1 else MODEL_PATH
+    out = sys.argv[2] if len(sys.argv) > 2 else path + '.parity'
+    sys.path.insert(0, HERE)
+    try:
+        import predict
+    except ImportError as e:
+        sys.exit('predict.py cannot be loaded (%s): the fixture must come from the Keras model itself' % e)
+    if predict.tf is None:
+        sys.exit('TensorFlow is not installed: the fixture must come from the Keras model itself')
+    if os.path.abspath(path) != os.path.abspath(predict.MODEL_PATH):
+        predict._model = predict.tf.keras.models.load_model(path)
+    if predict._model is None:
+        sys.exit('cannot load ' + path)
+    hists = histories()
+    rows = []
+    for h in hists:
+        r = json.loads(predict._answer(json.dumps({'history': h, 'raw': True})))
+        if 'out' not in r:
+            sys.exit('predict.py gave no raw output for ' + h)
+        rows.append(r['out'])
+    with open(out, 'w') as f:
+        f.write('# KerasEngine parity fixture for %s, source=tensorflow %s\n'
+                % (os.path.basename(path), predict.tf.__version__))
+        f.write('# <history> <raw output...> via predict.py {"raw":true}; regenerate after retraining\n')
+        for h, r in zip(hists, rows):
+            f.write(h + ' ' + ' '.join('%.9g' % v for v in r) + '\n')
+    print('%d histories -> %s (source=tensorflow)' % (len(hists), out))
+
+
+if __name__ == '__main__':
+    main()
@@ -1,4 +1,4 @@
-import sys, json, os
+import sys, json, os, struct
 import numpy as np
 try:
     import tensorflow as tf
@@ -18,21 +18,98 @@ def _encode_history(hist: str):
     mapping = {'T': 1.0, 'X': 0.0}
     return np.array([[mapping.get(ch, 0.0) for ch in hist]], dtype=np.float32)
 
-def main():
-    raw = sys.stdin.read()
+def _answer_all(n: int) -> str:
+    # Every history of n dots in one model call; row i is the bitmask i with
+    # T=1 and the oldest dot in the highest bit (same order as Predictor.pickAll).
+    try:
+        if _model is None:
+            raise RuntimeError('model not loaded')
+        shifts = np.arange(n - 1, -1, -1)
+        x = ((np.arange(2 ** n)[:, None] >> shifts) & 1).astype(np.float32)
+        pred = np.asarray(_model(x, training=False))
+        picks = ''.join(str(int(i)) for i in np.argmax(pred, axis=1))
+    except Exception:
+        picks = '2' * (2 ** n)
+    return json.dumps({'picks': picks})
+
+def _answer_batch(hists) -> str:
+    # Several histories in one request; one model call per distinct length
+    # (the LSTM input needs equal-length rows). Answer i is for history i.
+    picks = ['2'] * len(hists)
+    try:
+        if _model is None:
+            raise RuntimeError('model not loaded')
+        by_len = {}
+        for i, h in enumerate(hists):
+            if h:
+                by_len.setdefault(len(h), []).append(i)
+        for rows in by_len.values():
+            x = np.concatenate([_encode_history(hists[i]) for i in rows])
+            pred = np.asarray(_model(x, training=False))
+            for i, p in zip(rows, np.argmax(pred, axis=1)):
+                picks[i] = str(int(p))
+    except Exception:
+        picks = ['2'] * len(hists)
+    return json.dumps({'picks': ''.join(picks)})
+
+def _answer(raw: str) -> str:
     try:
         data = json.loads(raw)
+        if 'all' in data:
+            return _answer_all(int(data['all']))
+        if 'batch' in data:
+            return _answer_batch(data['batch'].split(','))
         hist = data.get('history', '')
         if _model is None:
             raise RuntimeError('model not loaded')
         x = _encode_history(hist)
-        pred = _model.predict(x, verbose=0)[0]
+        # Direct call instead of predict(): predict() builds a tf.data pipeline
+        # per call, which dominates latency in the persistent worker.
+        pred = np.asarray(_model(x, training=False))[0]
         idx = int(np.argmax(pred))
         mapping = {0: 'TAI', 1: 'XIU', 2: 'SKIP'}
         result = {'pick': mapping.get(idx, 'SKIP')}
+        if data.get('raw'):
+            # raw model output, used by the Java parity check (KerasEngine.main)
+            result['out'] = [float(v) for v in np.ravel(pred)]
     except Exception:
         result = {'pick': 'SKIP'}
-    sys.stdout.write(json.dumps(result))
+    return json.dumps(result)
+
+def _read_exact(stream, n: int):
+    buf = b''
+    while len(buf) < n:
+        chunk = stream.read(n - len(buf))
+        if not chunk:
+            return None
+        buf += chunk
+    return buf
+
+def serve():
+    # Persistent worker: each request/response is a 4-byte big-endian length
+    # followed by that many UTF-8 bytes. Stdout is reserved for frames, so any
+    # stray prints from TF/Keras are pushed to stderr.
+    stdin = sys.stdin.buffer
+    stdout = sys.stdout.buffer
+    sys.stdout = sys.stderr
+    while True:
+        header = _read_exact(stdin, 4)
+        if header is None:
+            break  # parent closed the pipe
+        (n,) = struct.unpack('>I', header)
+        payload = _read_exact(stdin, n)
+        if payload is None:
+            break
+        out = _answer(payload.decode('utf-8', errors='replace')).encode('utf-8')
+        stdout.write(struct.pack('>I', len(out)) + out)
+        stdout.flush()
+
+def main():
+    if '--worker' in sys.argv[1:]:
+        serve()
+        return
+    raw = sys.stdin.read()
+    sys.stdout.write(_answer(raw))
 
 if __name__ == '__main__':
     main()
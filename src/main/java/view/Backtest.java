@@ -0,0 +1,82 @@
+package view;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import controller.RoundStream;
+import model.History;
+import model.Predictor;
+
+/**
+ * Replays a recorded outcome sequence through the same decision path as a
+ * live {@link Statistic} session (prediction, retry/heuristic fallback,
+ * settlement, confusion matrix, bankroll), without Robot or sleeps.
+ *
+ * Input: any text where 'T'/'X' (either case) are outcomes in play order;
+ * everything else (newlines, commas, spaces) is ignored.  The file is read
+ * as a stream with a fixed buffer, so memory does not grow with its size.
+ * The first 13 outcomes form the first confirmed window; every outcome
+ * after that slides the window by one and settles one round.
+ */
+public class Backtest {
+
+    private static final int NUM_DOTS = 13;
+
+    private final Statistic stat;
+    private long outcomes;
+    private long elapsedNs;
+
+    public Backtest(Predictor predictor) {
+        this.stat = new Statistic(Integer.MAX_VALUE, predictor, false);
+    }
+
+    /** Also keeps every settled (prediction, actual) pair, e.g. for a bankroll sweep. */
+    public void recordRoundsTo(RoundStream stream) {
+        stat.recordRoundsTo(stream);
+    }
+
+    public void run(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            run(in);
+        }
+    }
+
+    public void run(InputStream raw) throws IOException {
+        long t0 = System.nanoTime();
+        InputStream in = (raw instanceof BufferedInputStream) ? raw : new BufferedInputStream(raw, 1 << 16);
+        byte[] buf = new byte[1 << 16];
+        int bits = 0, seen = 0;
+        History window = null;
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            for (int i = 0; i < n; i++) {
+                int c = buf[i] | 0x20; // về chữ thường
+                if (c != 't' && c != 'x') {
+                    continue;
+                }
+                outcomes++;
+                boolean t = (c == 't');
+                if (window != null) {
+                    window = window.shift(t);
+                    stat.onConfirmed(window);
+                    continue;
+                }
+                bits = (bits << 1) | (t ? 1 : 0);
+                if (++seen == NUM_DOTS) {
+                    window = History.of(bits, NUM_DOTS);
+                    stat.onConfirmed(window);
+                }
+            }
+        }
+        elapsedNs += System.nanoTime() - t0;
+    }
+
+    public void printSummary() {
+        stat.printSummary();
+        double secs = elapsedNs / 1e9;
+        System.out.printf("Backtest: outcomes=%d in %.3fs (%.0f rounds/s)%n",
+                outcomes, secs, secs > 0 ? Math.max(0, outcomes - NUM_DOTS) / secs : 0.0);
+    }
+}
@@ -0,0 +1,192 @@
+package view;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import controller.EventLog;
+import controller.Metrics;
+import controller.MultiTableScanner;
+import controller.RoundJournal;
+import controller.TableRegion;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.Predictor;
+
+/**
+ * Watches several tables from one process.  Every table has its own
+ * {@link Statistic} (stability window, pending prediction, Bankroll); all
+ * of them share one {@link MultiTableScanner} thread, one {@link Predictor}
+ * and a scheduler that pumps each table every {@link #TICK_MS}.
+ * A table is never pumped by two threads at once (fixed-delay scheduling).
+ *
+ * A pump blocks while its table waits for a pick (up to Statistic's 12s
+ * timeout), so the scheduler has one thread per table: a slow predictor
+ * answer holds up that table only, never the stability checks of the
+ * others.  The calls themselves run on their own pool ({@code table-predict},
+ * one thread per table), not in the common pool shared by everything else.
+ *
+ * Config file (JSON):
+ * <pre>
+ * {"tables": [
+ *   {"name": "A", "first": [408, 591], "last": [880, 590]},
+ *   {"name": "B", "first": [408, 891], "last": [880, 890], "journal": "B.rj"}
+ * ]}
+ * </pre>
+ * {@code journal} (tuỳ chọn): file {@link RoundJournal} riêng của bàn, khôi phục khi khởi động.
+ */
+public class MultiTable {
+
+    private static final long SCAN_PERIOD_MS = 100;
+    private static final long TICK_MS = 20;
+
+    private final List<TableRegion> regions;
+    private final Map<String, Path> journals;
+    private final int maxRounds;
+    private final Predictor predictor;
+
+    public MultiTable(List<TableRegion> regions, int maxRounds, Predictor predictor) {
+        this(regions, Map.of(), maxRounds, predictor);
+    }
+
+    /** {@code journals}: tên bàn -> file journal (bàn không có trong map thì không ghi). */
+    public MultiTable(List<TableRegion> regions, Map<String, Path> journals, int maxRounds, Predictor predictor) {
+        this.regions = List.copyOf(regions);
+        this.journals = Map.copyOf(journals);
+        this.maxRounds = maxRounds;
+        this.predictor = predictor;
+    }
+
+    /** Bàn -> journal khai báo trong config (đường dẫn tương đối theo thư mục của config). */
+    public static Map<String, Path> loadJournals(Path config, List<TableRegion> regions) throws IOException {
+        JsonArray tables = JsonParser.parseString(Files.readString(config)).getAsJsonObject().getAsJsonArray("tables");
+        Map<String, Path> out = new HashMap<>();
+        Path dir = config.toAbsolutePath().getParent();
+        for (int i = 0; i < tables.size(); i++) {
+            JsonObject t = tables.get(i).getAsJsonObject();
+            if (t.has("journal")) {
+                out.put(regions.get(i).name(), dir.resolve(t.get("journal").getAsString()));
+            }
+        }
+        return out;
+    }
+
+    public static List<TableRegion> loadRegions(Path config) throws IOException {
+        JsonObject root = JsonParser.parseString(Files.readString(config)).getAsJsonObject();
+        List<TableRegion> out = new ArrayList<>();
+        for (JsonElement el : root.getAsJsonArray("tables")) {
+            JsonObject t = el.getAsJsonObject();
+            String name = t.has("name") ? t.get("name").getAsString() : "T" + (out.size() + 1);
+            out.add(new TableRegion(name, point(t.getAsJsonArray("first")), point(t.getAsJsonArray("last"))));
+        }
+        if (out.isEmpty()) {
+            throw new IOException("no tables in " + config);
+        }
+        return out;
+    }
+
+    private static Point point(JsonArray xy) {
+        return new Point(xy.get(0).getAsInt(), xy.get(1).getAsInt());
+    }
+
+    /** Chạy tới khi mọi bàn đủ maxRounds. */
+    public void run() throws InterruptedException {
+        int n = regions.size();
+        MultiTableScanner scan = new MultiTableScanner(regions, SCAN_PERIOD_MS);
+        // pump chặn khi chờ predictor -> 1 thread / bàn, phần việc CPU của pump rất nhỏ
+        int workers = n;
+        ScheduledExecutorService sched = Executors.newScheduledThreadPool(workers, daemon("table-pump"));
+        ExecutorService calls = Executors.newFixedThreadPool(n, daemon("table-predict"));
+        ExecutorService spec = Executors.newSingleThreadExecutor(daemon("speculative-predict"));
+
+        Statistic[] stats = new Statistic[n];
+        for (int i = 0; i < n; i++) {
+            String name = regions.get(i).name();
+            stats[i] = new Statistic(name, maxRounds, predictor, true);
+            Path jp = journals.get(name);
+            if (jp != null) {
+                try {
+                    stats[i].attachJournal(RoundJournal.open(jp));
+                } catch (IOException e) {
+                    System.err.println("[ERR ] " + name + ": cannot open journal " + jp + ": " + e.getMessage());
+                }
+            }
+            stats[i].setCallExecutor(calls);
+            stats[i].enableSpeculation(spec);
+            scan.addListener(i, stats[i]::offer);
+        }
+        System.out.printf("[INFO] MultiTable: %d tables, %d capture groups, %d pump threads%n",
+                n, scan.getCaptureGroups(), workers);
+        Metrics.start();
+        predictor.warmUp();
+        scan.start();
+
+        CountDownLatch done = new CountDownLatch(n);
+        AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < n; i++) {
+            Statistic st = stats[i];
+            String table = regions.get(i).name();
+            boolean[] finished = {false}; // chỉ thread đang pump bàn này đọc/ghi
+            sched.scheduleWithFixedDelay(() -> {
+                if (finished[0]) {
+                    return;
+                }
+                try {
+                    finished[0] = st.pump();
+                } catch (RuntimeException e) {
+                    // lỗi 1 bàn không được làm dừng các bàn khác
+                    EventLog.msg(EventLog.ERR, table, "table failed: " + e);
+                    failed.incrementAndGet();
+                    finished[0] = true;
+                }
+                if (finished[0]) {
+                    done.countDown();
+                }
+            }, 0, TICK_MS, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            done.await();
+        } finally {
+            scan.stop();
+            sched.shutdownNow();
+            sched.awaitTermination(15, TimeUnit.SECONDS);
+            EventLog.flush(2000);
+            for (Statistic st : stats) {
+                st.cancelSpeculation();
+                st.printSummary();
+                st.closeJournal();
+            }
+            System.out.println("\n" + Statistic.scanSummary(scan.getFrameSkips(), scan.getFrameMisses())
+                    + " (" + n + " tables)");
+            spec.shutdownNow();
+            calls.shutdownNow();
+            predictor.close();
+        }
+        if (failed.get() > 0) {
+            System.err.println("[WARN] " + failed.get() + " table(s) stopped on error");
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -1,48 +1,90 @@
 package view;
 
 import controller.DotScannerService;
+import controller.EventLog;
+import controller.Bankroll;
+import controller.Metrics;
+import controller.RoundJournal;
+import controller.RoundStream;
+import controller.RollingStats;
+import controller.StakingStrategies;
+import java.io.IOException;
 import java.awt.Point;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import model.History;
 import model.LLM;
+import model.MarkovPredictor;
+import model.PatternIndex;
+import model.PredictionTable;
+import model.Predictor;
+import model.SessionHistory;
 
 public class Statistic {
 
     // ===== GIỮ NGUYÊN TOẠ ĐỘ + SCALE CỦA BẠN =====
+    private final String name;   // tên bàn khi chạy nhiều bàn, null = 1 bàn
     private final Point first = new Point(408, 591);
     private final Point last = new Point(880, 590);
     private final double screenScale = 1.0;
 
     // ===== NHỊP & GIÁM SÁT =====
-    private final long pollIntervalMs = 5000;   // quét mỗi 2s
+    private final long scanPeriodMs = 100;    // scanner quét 10 lần/s, chỉ báo khi lịch sử đổi
+    private final long idleWaitMs = 1000;     // chờ tối đa 1s rồi kiểm tra heartbeat
     private final long heartbeatMs = 20_000; // in heartbeat mỗi 20s khi chờ
     private final long stallWarnMs = 90_000; // >90s không thấy round close -> cảnh báo
 
-    // ===== STABILITY WINDOW (K lần đọc giống hệt) =====
-    private final int requiredStable = 2;      // K=2 là "đủ mượt"; có thể đổi 3 nếu UI nháy nhiều
-    private String prevHistory = null;   // lịch sử đã XÁC NHẬN gần nhất
-    private String candidateHistory = null;   // ứng viên lịch sử đang ổn định
-    private int stableCount = 0;      // số lần thấy liên tiếp candidateHistory
+    // ===== STABILITY WINDOW (không đổi trong stableMs) =====
+    private final long stableMs = 400;         // UI nháy nhiều thì tăng lên
+    private final LinkedBlockingQueue<Change> changes = new LinkedBlockingQueue<>();
+    private History prevHistory = null;   // lịch sử đã XÁC NHẬN gần nhất
+    private History candidateHistory = null;   // ứng viên lịch sử đang ổn định
+    private long candidateSinceMs = 0L;   // thời điểm scanner thấy candidateHistory
 
     // ===== LLM & PREDICTION =====
-    private final LLM llm = new LLM();
+    private final Predictor llm;          // LLM (Python) hoặc KerasEngine (Java thuần)
+    private final PredictionTable table;  // != null: tra bảng 2^13, bỏ qua timeout/retry/fallback
+    private final MarkovPredictor markov; // học online từ các ván đã settle, dùng cho fallback
+    private final SessionHistory session = new SessionHistory(); // toàn bộ chuỗi của phiên, ghép từ các cửa sổ 13 chấm
+    private final int sessionMinSamples = 30;   // fallback: ngữ cảnh dài cần ít nhất chừng này lần xuất hiện
+    private final double sessionMargin = 0.05;  // ... và lệch khỏi 50% ít nhất chừng này
     private Pred pendingPred = null;   // kèo đã "đặt" cho ván đang chạy, sẽ settle khi close
-    private final boolean enableRetryOnSkip = true;   // thử gọi lại 1 lần nếu ra SKIP
+    private int pendingSource = RoundJournal.SOURCE_MODEL; // kèo đến từ đâu (model/retry/heuristic/bảng)
+    private final boolean enableRetryOnSkip;   // thử gọi lại 1 lần nếu ra SKIP (Predictor.retryOnSkip)
     private final boolean enableHeuristicFallback = true; // fallback local khi vẫn SKIP (mặc định tắt)
 
+    // ===== SPECULATIVE PRE-INFERENCE =====
+    // Lịch sử xác nhận kế tiếp chỉ có thể là shift(T) hoặc shift(X) của lịch sử hiện tại
+    // -> hỏi predictor cả 2 trong lúc chờ ván đóng, khi đóng chỉ lấy kết quả sẵn có.
+    private boolean speculate = false;          // bật trong run() (live) khi không dùng bảng
+    private ExecutorService specExec = null;    // 1 thread daemon, 1 task / ván
+    private History specBase = null;            // lịch sử đã dùng để đoán trước
+    private CompletableFuture<byte[]> specBatch = null;    // pick của (shift T, shift X)
+    private CompletableFuture<String> specT = null, specX = null;
+    private ExecutorService callExec = null;    // chạy lệnh gọi predictor có timeout; null = common pool
+
     // ===== BANKROLL (MARTINGALE) =====
     private final double baseBet = 3.0;       // cược gốc (bạn đổi được)
     private final double multiplier = 2.0;       // x2 (đổi 3.0 nếu muốn x3)
     private final Double stakeCap = null;      // null = không giới hạn
     private final Bankroll bankroll = new Bankroll(baseBet, multiplier, stakeCap);
+    // Chạy bóng nhiều cách vào tiền trên cùng chuỗi kèo thật, không đụng tới stake thật
+    private final double shadowCapital = 1000.0;
+    private final double shadowTableMax = 5000.0; // giới hạn cược của bàn, mọi chiến lược bóng
+    private final int shadowReportEvery = 100;  // in top 3 mỗi 100 ván cược (verbose)
+    private final StakingStrategies shadow = StakingStrategies.defaults(baseBet, shadowCapital, shadowTableMax);
 
     // ===== GIỚI HẠN SỐ VÁN =====
     private final int maxRounds;
+    private final boolean verbose;       // false = không in từng ván (backtest)
 
     // ===== THỐNG KÊ / LOG =====
     private int settledRounds = 0;       // số ván đã settle (đã có actual)
@@ -50,12 +92,19 @@ public class Statistic {
     private int pTAI_aT = 0, pTAI_aX = 0, pXIU_aX = 0, pXIU_aT = 0, pSKIP_aT = 0, pSKIP_aX = 0;
     private int heuristicFallbackUsedCount = 0;
     private int heuristicFallbackCorrectCount = 0;
+    private final RollingStats rolling = new RollingStats(); // acc/PnL 50/200/1000 ván cược gần nhất, drawdown, chuỗi
+    private DotScannerService scanner;    // run() tạo; null khi MultiTable quét hộ (nó tự in số frame)
+    private Predicate<RollingStats> stopLoss = null;         // != null: dừng phiên khi trả về true sau 1 ván
+
+    private RoundStream recorder = null; // != null: ghi (pred, actual) mỗi ván cho sweep
+    private RoundJournal journal = null; // != null: ghi mỗi ván đã settle xuống đĩa
+    private int recoveredRounds = 0;     // số ván khôi phục từ journal (không tính vào maxRounds)
 
     private long lastHeartbeatAtMs = 0L;
     private long lastChangeAtMs = 0L;
-    private final DateTimeFormatter tsFmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     // Regex: "pick": "TAI|XIU|SKIP"
+    private static final Pred[] PREDS = Pred.values();   // values() clone mỗi lần gọi
     private static final Pattern PICK_RE = Pattern.compile("\"pick\"\\s*:\\s*\"\\s*(TAI|XIU|SKIP)\\s*\"", Pattern.CASE_INSENSITIVE);
 
     public Statistic() {
@@ -63,91 +112,232 @@ public class Statistic {
     }
 
     public Statistic(int maxRounds) {
+        this(maxRounds, new LLM());
+    }
+
+    public Statistic(int maxRounds, Predictor predictor) {
+        this(maxRounds, predictor, true);
+    }
+
+    public Statistic(int maxRounds, Predictor predictor, boolean verbose) {
+        this(null, maxRounds, predictor, verbose);
+    }
+
+    /** {@code name} != null: tên bàn, in kèm mỗi dòng log (chạy nhiều bàn, xem {@link MultiTable}). */
+    public Statistic(String name, int maxRounds, Predictor predictor, boolean verbose) {
+        this.name = name;
         this.maxRounds = maxRounds;
+        this.verbose = verbose;
+        this.llm = predictor;
+        this.table = (predictor instanceof PredictionTable t) ? t : null;
+        this.markov = (predictor instanceof MarkovPredictor m) ? m : new MarkovPredictor();
+        this.enableRetryOnSkip = predictor.retryOnSkip();
     }
 
     public void run() {
-        // Start scanner đúng 1 lần
-        DotScannerService scan = new DotScannerService(first, last, screenScale);
+        // Start scanner đúng 1 lần; mọi thay đổi lịch sử đi qua hàng đợi (scanner = producer duy nhất)
+        DotScannerService scan = new DotScannerService(first, last, screenScale, scanPeriodMs);
+        scanner = scan;
+        scan.addListener(this::offer);
         scan.start();
-        log("[INFO] Statistic started. Poll=" + pollIntervalMs + "ms, requiredStable=" + requiredStable);
+        EventLog.msg(EventLog.INFO, name, "Statistic started. Scan=" + scanPeriodMs + "ms, stableMs=" + stableMs);
+        Metrics.start();
+        llm.warmUp(); // nạp model 1 lần trong lúc scanner chạy
+        ExecutorService spec = null;
+        if (table == null && llm.canStall()) {
+            spec = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "speculative-predict");
+                t.setDaemon(true);
+                return t;
+            });
+            enableSpeculation(spec);
+        }
 
         while (true) {
+            long waitMs = nextWaitMs(System.currentTimeMillis());
+            Change ch;
             try {
-                Thread.sleep(pollIntervalMs);
+                ch = changes.poll(waitMs, TimeUnit.MILLISECONDS);
             } catch (InterruptedException ie) {
                 Thread.currentThread().interrupt();
-                log("[ERR ] loop interrupted");
+                EventLog.msg(EventLog.ERR, name, "loop interrupted");
                 break;
             }
-
-            String history = scan.getLastHistory();
-            if (history == null || history.length() < 13) {
-                heartbeat();
-                continue;
+            if (handle(ch)) {
+                break;
             }
+        }
+        scan.stop();
+        cancelSpeculation();
+        if (spec != null) {
+            spec.shutdownNow();
+        }
+        EventLog.flush(2000);
+        printSummary();
+        closeJournal();
+        llm.close();
+    }
 
-            // === STABILITY WINDOW ===
-            if (!history.equals(candidateHistory)) {
-                candidateHistory = history;
-                stableCount = 1;
-                //log("[DBG ] candidate changed; reset stableCount=1");
-            } else {
-                stableCount++;
-                //log("[DBG ] stableCount=" + stableCount + "/" + requiredStable);
+    /** Scanner callback (thread bất kỳ): đưa thay đổi lịch sử vào hàng đợi. */
+    void offer(History history, long atMs) {
+        changes.offer(new Change(history, atMs));
+    }
+
+    /**
+     * Một bước không chặn cho scheduler dùng chung: xử lý hết thay đổi đang chờ
+     * rồi kiểm tra stability window.  Trả về true khi đã đủ maxRounds.
+     * Không được gọi song song cho cùng 1 Statistic.
+     */
+    boolean pump() {
+        Change ch;
+        while ((ch = changes.poll()) != null) {
+            if (handle(ch)) {
+                return true;
             }
+        }
+        return handle(null);
+    }
 
-            if (stableCount < requiredStable) {
-                heartbeat();
-                continue;
+    /**
+     * Lệnh gọi predictor (có timeout 12s) chạy trên {@code exec} thay vì common
+     * pool: nhiều bàn chờ predictor cùng lúc không phải xếp hàng sau nhau
+     * trong common pool (chỉ ~số core thread).
+     */
+    void setCallExecutor(ExecutorService exec) {
+        callExec = exec;
+    }
+
+    // chỉ có ích khi predictor có thể chậm; predictor trong process trả lời ngay lúc close
+    void enableSpeculation(ExecutorService exec) {
+        if (table == null && llm.canStall()) {
+            speculate = true;
+            specExec = exec;
+        }
+    }
+
+    private boolean waitingStable() {
+        return candidateHistory != null && !candidateHistory.equals(prevHistory);
+    }
+
+    private long nextWaitMs(long now) {
+        return waitingStable() ? Math.max(1, candidateSinceMs + stableMs - now) : idleWaitMs;
+    }
+
+    // ch == null: hết thời gian chờ, không có thay đổi mới
+    private boolean handle(Change ch) {
+        boolean waitingStable = waitingStable();
+        if (ch != null) {
+            // Ứng viên cũ đã đứng yên đủ lâu trước khi đổi -> xác nhận nó trước (không bỏ sót trạng thái nào)
+            if (waitingStable && ch.atMs() - candidateSinceMs >= stableMs && confirm(ch.atMs())) {
+                return true;
             }
-            // Tới đây: candidateHistory đã ổn định đủ K lần
-            boolean firstConfirm = (prevHistory == null);
-            boolean closed = !firstConfirm && !candidateHistory.equals(prevHistory);
-
-            if (firstConfirm) {
-                // Lần đầu có lịch sử ổn định: chưa settle gì, chỉ xin kèo cho ván kế tiếp
-                pendingPred = callLLMForPick(candidateHistory);
-                System.out.printf("[%s] NEW SESS | hist=%s | pred_next=%s | nextStake=%.2f%n",
-                        nowStr(), candidateHistory, pendingPred, bankroll.getCurrentStake());
-                prevHistory = candidateHistory;
-                lastChangeAtMs = System.currentTimeMillis();
-                continue;
+            if (ch.history().length() >= 13) {
+                candidateHistory = ch.history();
+                candidateSinceMs = ch.atMs();
             }
+            return false;
+        }
 
-            if (closed) {
-                // 1) SETTLE kèo cũ với actual = ký tự cuối của lịch sử đã ổn định mới
-                Actual actual = (candidateHistory.charAt(candidateHistory.length() - 1) == 'T') ? Actual.T : Actual.X;
-                if (pendingPred != null) {
-                    settledRounds++;
-                    settleAndReport(candidateHistory, pendingPred, actual);
-                    pendingPred = null;
-                    if (settledRounds >= maxRounds) {
-                        break;
-                    }
-                }
+        // === STABILITY WINDOW: không đổi trong stableMs ===
+        long now = System.currentTimeMillis();
+        if (waitingStable && now - candidateSinceMs >= stableMs) {
+            return confirm(now);
+        }
 
-                // 2) NEW PRED cho ván kế tiếp, dùng lịch sử hiện tại
-                pendingPred = callLLMForPick(candidateHistory);
-                System.out.printf("[%s] NEW SESS | hist=%s | pred_next=%s | nextStake=%.2f%n",
-                        nowStr(), candidateHistory, pendingPred, bankroll.getCurrentStake());
+        // Không đổi round → heartbeat / stall warn
+        heartbeat();
+        return false;
+    }
 
-                prevHistory = candidateHistory;
-                lastChangeAtMs = System.currentTimeMillis();
-                continue;
+    // Xác nhận candidate; confirm latency = từ lúc scanner thấy nó tới lúc xác nhận
+    private boolean confirm(long nowMs) {
+        if (Metrics.ENABLED) {
+            Metrics.CONFIRM.record(TimeUnit.MILLISECONDS.toNanos(nowMs - candidateSinceMs));
+        }
+        return onConfirmed(candidateHistory);
+    }
+
+    /**
+     * Một lịch sử vừa được xác nhận (khác lịch sử xác nhận trước đó):
+     * settle kèo đang chờ rồi xin kèo cho ván kế tiếp.
+     * Trả về true khi đã đủ maxRounds.
+     */
+    boolean onConfirmed(History history) {
+        // cửa sổ đầu sau khi khôi phục journal: nối vào đuôi đã khôi phục (phiên mới: tail rỗng -> segment mới)
+        session.stitch(prevHistory != null ? prevHistory : session.tail(history.length()), history);
+        if (prevHistory != null && pendingPred != null) {
+            // 1) SETTLE kèo cũ với actual = ký tự cuối của lịch sử đã ổn định mới
+            Actual actual = history.lastIsT() ? Actual.T : Actual.X;
+            settledRounds++;
+            long s0 = Metrics.ENABLED ? System.nanoTime() : 0L;
+            settleAndReport(history, pendingPred, actual);
+            if (Metrics.ENABLED) {
+                Metrics.SETTLE.since(s0);
+            }
+            pendingPred = null;
+            if (settledRounds - recoveredRounds >= maxRounds) {
+                return true;
+            }
+            if (stopLoss != null && stopLoss.test(rolling)) {
+                EventLog.msg(EventLog.STOP, name, "stop-loss hit: " + rolling.compact());
+                return true;
             }
+        }
 
-            // Không đổi round → heartbeat / stall warn
-            heartbeat();
+        // 2) NEW PRED cho ván kế tiếp, dùng lịch sử hiện tại
+        //    (lần đầu có lịch sử ổn định: chưa settle gì, chỉ xin kèo)
+        long p0 = Metrics.ENABLED ? System.nanoTime() : 0L;
+        pendingPred = callLLMForPick(history, takeSpeculation(history));
+        if (Metrics.ENABLED) {
+            Metrics.PREDICT.since(p0);
+            Metrics.ROUNDS_CONFIRMED.increment();
         }
-        printSummary();
+        if (speculate) {
+            startSpeculation(history);
+        }
+        if (verbose) {
+            EventLog.newSession(name, history.bits(), history.length(), pendingPred.ordinal(), bankroll.getCurrentStake());
+        }
+
+        prevHistory = history;
+        lastChangeAtMs = System.currentTimeMillis();
+        return false;
     }
 
     // ======= SETTLE & REPORT =======
-    private void settleAndReport(String history, Pred pred, Actual actual) {
+    private void settleAndReport(History history, Pred pred, Actual actual) {
         if (pred == null) {
             pred = Pred.SKIP; // phòng hờ
         }
+        double stake = (pred == Pred.SKIP) ? 0.0 : bankroll.getCurrentStake();
+        tally(prevHistory, pred, actual, pendingSource);
+        if (journal != null) {
+            try {
+                journal.append(System.currentTimeMillis(), prevHistory, toBankroll(pred), toBankroll(actual),
+                        pendingSource, stake, bankroll.getProfit());
+            } catch (IOException e) {
+                EventLog.msg(EventLog.ERR, name, "journal write failed, journaling off: " + e.getMessage());
+                journal = null;
+            }
+        }
+
+        if (!verbose) {
+            return;
+        }
+        int roundsBet = bankroll.getRoundsBet();
+        double accBets = (roundsBet == 0) ? 0.0 : (double) correctOnBets / roundsBet;
+        // chỉ chép số vào ring; định dạng + in do thread của EventLog làm
+        EventLog.round(name, settledRounds, pred.ordinal(), actual.ordinal(), pendingSource,
+                accBets, bankroll.getProfit(), bankroll.getCurrentStake(), rolling);
+        if (pred != Pred.SKIP && roundsBet % shadowReportEvery == 0) {
+            // hiếm (1 lần / 100 ván cược) nên định dạng ngay tại đây
+            EventLog.msg(EventLog.INFO, name, "shadow top3: " + shadow.compact(3));
+        }
+    }
+
+    // Cập nhật mọi trạng thái của 1 ván đã settle (dùng chung cho live và khôi phục journal)
+    // from = lịch sử lúc ra kèo (null nếu không biết)
+    private void tally(History from, Pred pred, Actual actual, int source) {
         // Cập nhật confusion matrix + đếm đúng/sai theo dự đoán
         switch (pred) {
             case TAI:
@@ -177,27 +367,126 @@ public class Statistic {
                 break;
         } // <-- ĐÃ đóng switch đúng chỗ
 
+        if (source == RoundJournal.SOURCE_HEURISTIC
+                && ((pred == Pred.TAI && actual == Actual.T) || (pred == Pred.XIU && actual == Actual.X))) {
+            heuristicFallbackCorrectCount++;
+        }
+
         // Bankroll: SKIP = không cược
-        bankroll.onRound(
-                (pred == Pred.SKIP) ? Bankroll.Pred.SKIP
-                        : (pred == Pred.TAI ? Bankroll.Pred.TAI : Bankroll.Pred.XIU),
-                (actual == Actual.T) ? Bankroll.Actual.T : Bankroll.Actual.X
-        );
+        double before = bankroll.getProfit();
+        bankroll.onRound(toBankroll(pred), toBankroll(actual));
+        boolean won = (pred == Pred.TAI) == (actual == Actual.T);
+        shadow.onRound(pred != Pred.SKIP, won);
+        if (pred != Pred.SKIP) {
+            rolling.onBet(won, bankroll.getProfit() - before);
+        }
+        if (from != null) {
+            // cho predictor học online (mặc định không làm gì) + markov của fallback
+            llm.observe(from, actual == Actual.T);
+            if (markov != llm) {
+                markov.observe(from, actual == Actual.T);
+            }
+        }
+        if (recorder != null) {
+            recorder.add(toBankroll(pred), toBankroll(actual));
+        }
+    }
 
-        int roundsBet = bankroll.getRoundsBet();
-        double accBets = (roundsBet == 0) ? 0.0 : (double) correctOnBets / roundsBet;
-        boolean win = (pred == Pred.TAI && actual == Actual.T) || (pred == Pred.XIU && actual == Actual.X);
-        String result = (pred == Pred.SKIP) ? "SKIP" : (win ? "WIN" : "LOSE");
+    private static Bankroll.Pred toBankroll(Pred pred) {
+        return (pred == Pred.SKIP) ? Bankroll.Pred.SKIP
+                : (pred == Pred.TAI ? Bankroll.Pred.TAI : Bankroll.Pred.XIU);
+    }
 
-        System.out.printf("[%s] Round=%d | pred=%s actual=%s result=%s | acc=%.2f%% | pnl=%.2f | nextStake=%.2f%n",
-                nowStr(), settledRounds, pred, actual, result, accBets * 100.0,
-                bankroll.getProfit(), bankroll.getCurrentStake());
+    private static Bankroll.Actual toBankroll(Actual actual) {
+        return (actual == Actual.T) ? Bankroll.Actual.T : Bankroll.Actual.X;
     }
 
-    private void printSummary() {
+    /**
+     * Khôi phục trạng thái (bankroll, confusion, đếm đúng/sai, session history)
+     * từ journal rồi ghi tiếp các ván mới vào đó.  Gọi trước khi chạy.  Trả về số ván đã khôi phục.
+     * Các ván mới mang tên predictor (tên class) để analytics tách theo predictor;
+     * header hết chỗ cho tên mới -> IOException, journal bị đóng.
+     */
+    public int attachJournal(RoundJournal j) throws IOException {
+        try {
+            j.setPredictor(llm.getClass().getSimpleName());
+        } catch (IOException e) {
+            j.close();
+            throw e;
+        }
+        long t0 = System.nanoTime();
+        int[] stakeMismatch = {0};
+        History[] lastWindow = {null};
+        j.replay((atMs, bits, len, pred, actual, source, stake, pnl) -> {
+            Pred p = PREDS[pred.ordinal()];
+            if (p != Pred.SKIP && Math.abs(stake - bankroll.getCurrentStake()) > 1e-9) {
+                stakeMismatch[0]++;
+            }
+            settledRounds++;
+            History h = len > 0 ? History.of(bits, len) : null;
+            if (h != null) {
+                // như live: cửa sổ của kèo rồi cửa sổ đã settle nó (= h dịch thêm kết quả)
+                History next = h.shift(actual == Bankroll.Actual.T);
+                session.stitch(lastWindow[0], h);
+                session.stitch(h, next);
+                lastWindow[0] = next;
+            }
+            tally(h, p, actual == Bankroll.Actual.T ? Actual.T : Actual.X, source);
+            if (source == RoundJournal.SOURCE_HEURISTIC) {
+                heuristicFallbackUsedCount++;
+            }
+        });
+        recoveredRounds = settledRounds;
+        journal = j;
+        EventLog.msg(EventLog.INFO, name, String.format("journal %s: recovered %d rounds in %.1fms | %s",
+                j.getPath(), recoveredRounds, (System.nanoTime() - t0) / 1e6, bankroll.summary()));
+        if (j.getDiscarded() > 0) {
+            EventLog.msg(EventLog.WARN, name, j.getDiscarded()
+                    + " damaged or unreachable journal records dropped (power loss / corruption?)");
+        }
+        if (stakeMismatch[0] > 0) {
+            EventLog.msg(EventLog.WARN, name, stakeMismatch[0]
+                    + " journal stakes differ from the current Bankroll settings (baseBet/multiplier/cap changed?)");
+        }
+        return recoveredRounds;
+    }
+
+    public SessionHistory getSessionHistory() {
+        return session;
+    }
+
+    public StakingStrategies getShadowStrategies() {
+        return shadow;
+    }
+
+    public RollingStats getRollingStats() {
+        return rolling;
+    }
+
+    /** Luật dừng lỗ, kiểm tra sau mỗi ván đã settle (vd. {@code r -> r.pnl(1) < -150}). */
+    public void setStopLoss(Predicate<RollingStats> rule) {
+        this.stopLoss = rule;
+    }
+
+    void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                EventLog.msg(EventLog.ERR, name, "journal close failed: " + e.getMessage());
+            }
+            journal = null;
+        }
+    }
+
+    void recordRoundsTo(RoundStream stream) {
+        this.recorder = stream;
+    }
+
+    void printSummary() {
         int roundsBet = bankroll.getRoundsBet();
         double accBets = (roundsBet == 0) ? 0.0 : (double) correctOnBets / roundsBet * 100.0;
-        System.out.println("\n===== SUMMARY =====");
+        System.out.println(name == null ? "\n===== SUMMARY =====" : "\n===== SUMMARY (" + name + ") =====");
         System.out.printf("Rounds settled: %d%n", settledRounds);
         System.out.printf("Bets placed: %d%n", roundsBet);
         System.out.printf("Accuracy on bets: %.2f%%%n", accBets);
@@ -208,42 +497,152 @@ public class Statistic {
                 heuristicFallbackUsedCount, heuristicFallbackCorrectCount,
                 (heuristicFallbackUsedCount == 0) ? 0.0
                         : (double) heuristicFallbackCorrectCount / heuristicFallbackUsedCount * 100.0);
+        System.out.println("Rolling: " + rolling.compact());
+        System.out.println("Losing streaks: " + rolling.streakSummary());
+        System.out.printf("Session: %d dots in %d segment(s), pattern index %d nodes, ~%.1f KB%n",
+                session.length(), session.getSegments(), session.getIndex().getNodes(), session.getBytes() / 1024.0);
+        shadow.print();
+        if (scanner != null) {
+            System.out.println(scanSummary(scanner.getFrameSkips(), scanner.getFrameMisses()));
+        }
+        if (Metrics.ENABLED) {
+            System.out.println(Metrics.dump());
+        }
+    }
+
+    /** "Scan: ..." line of the summary: frames skipped by fingerprint vs sampled. */
+    static String scanSummary(long skips, long misses) {
+        long frames = skips + misses;
+        return String.format("Scan: %d frames, %d unchanged (skipped, %.1f%%), %d sampled",
+                frames, skips, frames == 0 ? 0.0 : 100.0 * skips / frames, misses);
     }
 
     // ======= LLM CALL (TIMEOUT + PARSER CỨNG + CHỐNG SKIP) =======
-    private Pred callLLMForPick(String history) {
-        String inputJson = "{\"history\":\"" + history + "\"}";
-        String raw = safeCallLLM(inputJson);
+    // ready != null: câu trả lời đã được hỏi trước (speculative), chỉ cần chờ nó xong
+    private Pred callLLMForPick(History history, CompletableFuture<String> ready) {
+        if (table != null) {
+            pendingSource = RoundJournal.SOURCE_TABLE;
+            return toPred(table.pick(history));
+        }
+        pendingSource = RoundJournal.SOURCE_MODEL;
+        String raw = (ready != null) ? awaitAnswer(ready) : safeCallLLM(() -> llm.getAnswer(history));
         Pred pred = parsePick(extractJsonObject(raw));
 
         if (pred == Pred.SKIP && enableRetryOnSkip) {
             // Retry 1 lần với “hint” (không đổi API): thêm nhãn RETRY để tách ngữ cảnh
-            String raw2 = safeCallLLM(inputJson + " RETRY");
+            if (Metrics.ENABLED) {
+                Metrics.RETRIES.increment();
+            }
+            String inputJson = "{\"history\":\"" + history + "\"}";
+            String raw2 = safeCallLLM(() -> llm.getAnswer(inputJson + " RETRY"));
             pred = parsePick(extractJsonObject(raw2));
+            pendingSource = RoundJournal.SOURCE_RETRY;
         }
         if (pred == Pred.SKIP && enableHeuristicFallback) {
             Pred h = heuristicFallback(history);
-            System.out.println("[DBG ] heuristic fallback -> " + h);
+            if (verbose) {
+                EventLog.fallback(name, h.ordinal());
+            }
             pred = h;
+            pendingSource = RoundJournal.SOURCE_HEURISTIC;
             heuristicFallbackUsedCount++;
+            if (Metrics.ENABLED) {
+                Metrics.FALLBACKS.increment();
+            }
         }
         return pred;
     }
 
     // Timeout cứng: 12s. Không để vòng lặp bị kẹt.
-    private String safeCallLLM(String json) {
+    private String safeCallLLM(Supplier<String> call) {
+        if (!llm.canStall()) {
+            // predictor trong process: gọi thẳng, không tốn 1 thread + timeout mỗi lần
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                EventLog.msg(EventLog.ERR, name, "predictor error -> SKIP: " + e);
+                return "{\"pick\":\"SKIP\"}";
+            }
+        }
+        return awaitAnswer(callExec != null ? CompletableFuture.supplyAsync(call, callExec)
+                : CompletableFuture.supplyAsync(call));
+    }
+
+    private String awaitAnswer(CompletableFuture<String> answer) {
+        long w0 = Metrics.ENABLED ? System.nanoTime() : 0L;
         try {
-            return CompletableFuture
-                    .supplyAsync(() -> llm.getAnswer(json))
-                    .get(12, TimeUnit.SECONDS);
+            return answer.get(12, TimeUnit.SECONDS);
         } catch (Throwable t) {
-            System.err.println("[ERR ] LLM timeout/error -> SKIP: " + t.getClass().getSimpleName() + ": " + t.getMessage());
+            if (Metrics.ENABLED) {
+                Metrics.PREDICT_TIMEOUTS.increment();
+            }
+            EventLog.msg(EventLog.ERR, name, "LLM timeout/error -> SKIP: " + t.getClass().getSimpleName() + ": " + t.getMessage());
             return "{\"pick\":\"SKIP\"}";
+        } finally {
+            if (Metrics.ENABLED) {
+                Metrics.PREDICT_WAIT.since(w0);
+            }
         }
     }
 
+    // ======= SPECULATION =======
+    // cả 2 nhánh trong 1 lần pickBatch: LLM hỏi worker 1 request {"batch":...}, 1 lần chạy model;
+    // chỉ 1 lần gọi nên nhánh X không phải xếp hàng sau nhánh T
+    private void startSpeculation(History history) {
+        cancelSpeculation();
+        specBase = history;
+        History[] next = {history.shift(true), history.shift(false)};
+        specBatch = CompletableFuture.supplyAsync(() -> {
+            byte[] out = new byte[2];
+            llm.pickBatch(next, 2, out);
+            return out;
+        }, specExec);
+        specT = specBatch.thenApply(out -> pickJson(out[0]));
+        specX = specBatch.thenApply(out -> pickJson(out[1]));
+    }
+
+    private static String pickJson(int code) {
+        return "{\"pick\":\"" + toPred(code) + "\"}";
+    }
+
+    // Future của nhánh khớp với lịch sử vừa xác nhận; null nếu không khớp (nhảy ván, đọc sai...)
+    private CompletableFuture<String> takeSpeculation(History history) {
+        if (specBase == null) {
+            return null;
+        }
+        CompletableFuture<String> hit = null;
+        if (history.equals(specBase.shift(true))) {
+            hit = specT;
+        } else if (history.equals(specBase.shift(false))) {
+            hit = specX;
+        }
+        if (hit != null) {
+            specBatch = null; // đang chờ kết quả của nó: không huỷ
+        }
+        cancelSpeculation();
+        if (Metrics.ENABLED) {
+            (hit != null ? Metrics.SPEC_HITS : Metrics.SPEC_MISSES).increment();
+        }
+        return hit;
+    }
+
+    void cancelSpeculation() {
+        // task chưa chạy thì bỏ; task đang chạy cứ để xong (không ngắt IO của worker)
+        if (specBatch != null) {
+            specBatch.cancel(false);
+        }
+        specBatch = null;
+        specT = specX = null;
+        specBase = null;
+    }
+
+    // mã pick 0=TAI 1=XIU 2=SKIP; mã lạ (vd. 3 trong bảng 2 bit) = SKIP
+    static Pred toPred(int code) {
+        return (code >= 0 && code < PREDS.length) ? PREDS[code] : Pred.SKIP;
+    }
+
     // Trích phần JSON {...} đầu tiên; nếu không có thì trả raw.trim()
-    private String extractJsonObject(String s) {
+    static String extractJsonObject(String s) {
         if (s == null) {
             return "{\"pick\":\"SKIP\"}";
         }
@@ -255,7 +654,7 @@ public class Statistic {
     }
 
     // Parser: JSON -> "pick", fallback keyword
-    private Pred parsePick(String responseJson) {
+    static Pred parsePick(String responseJson) {
         if (responseJson == null) {
             return Pred.SKIP;
         }
@@ -273,7 +672,7 @@ public class Statistic {
             }
         } catch (Exception e) {
             // Fallback to string matching if JSON parsing fails
-            System.err.println("[WARN] JSON parsing failed, falling back to string matching: " + e.getMessage());
+            EventLog.msg(EventLog.WARN, null, "JSON parsing failed, falling back to string matching: " + e.getMessage());
         }
 
         // Fallback: tìm khóa "pick":"..."
@@ -300,7 +699,7 @@ public class Statistic {
         return Pred.SKIP;
     }
 
-    private Pred toPred(String x) {
+    private static Pred toPred(String x) {
         String t = (x == null) ? "" : x.trim().toUpperCase();
         return switch (t) {
             case "TAI" ->
@@ -312,8 +711,30 @@ public class Statistic {
         };
     }
 
-    // Heuristic optional: majority 13; tie -> anti-run theo last char
-    private Pred heuristicFallback(String history) {
+    // Fallback: Markov online khi đã đủ dữ liệu, nếu chưa thì luật anti-run/follow cũ
+    private Pred heuristicFallback(History history) {
+        // ngữ cảnh dài hơn markov (9..16 chấm) từ toàn bộ phiên, dài nhất đủ mẫu thắng
+        History tail = session.tail(session.getIndex().getMaxDepth());
+        PatternIndex idx = session.getIndex();
+        for (int d = tail.length(); d > markov.getMaxOrder(); d--) {
+            History p = History.of(tail.bits(), d);
+            int t = idx.followedByT(p), x = idx.followedByX(p);
+            if (t + x >= sessionMinSamples) {
+                double pT = (double) t / (t + x);
+                if (Math.abs(pT - 0.5) >= sessionMargin) {
+                    return pT > 0.5 ? Pred.TAI : Pred.XIU;
+                }
+                break;
+            }
+        }
+        switch (markov.pick(history, false)) {
+            case 0:
+                return Pred.TAI;
+            case 1:
+                return Pred.XIU;
+            default:
+                break;
+        }
         // Simple heuristic: if the last two results are the same, predict the opposite (anti-run)
         // Otherwise, predict the same as the last result (follow)
         if (history.length() >= 2) {
@@ -334,113 +755,24 @@ public class Statistic {
         long now = System.currentTimeMillis();
         if (now - lastHeartbeatAtMs >= heartbeatMs) {
             lastHeartbeatAtMs = now;
-            System.out.println("[HB  ] alive; waiting round close...");
+            EventLog.msg(EventLog.HB, name, "alive; waiting round close...");
         }
         if (lastChangeAtMs > 0 && now - lastChangeAtMs >= stallWarnMs) {
-            System.out.println("[WARN] >90s no round close detected. Check scanning region/scale/visibility.");
+            EventLog.msg(EventLog.WARN, name, ">90s no round close detected. Check scanning region/scale/visibility.");
             lastChangeAtMs = now; // tránh spam
         }
     }
 
-    // ======= UTILS =======
-    private String nowStr() {
-        return LocalDateTime.now().format(tsFmt);
-    }
-
-    private void log(String s) {
-        System.out.println(s);
+    // Một lần scanner thấy lịch sử đổi
+    private record Change(History history, long atMs) {
     }
 
     // ======= ENUMS =======
-    private enum Pred {
+    enum Pred {
         TAI, XIU, SKIP
     }
 
     private enum Actual {
         T, X
     }
-
-    // ======= BANKROLL (MARTINGALE) =======
-    public static class Bankroll {
-
-        private final double baseBet, multiplier;
-        private final Double stakeCap;
-        private double stake, profit, maxStake, peakProfit, maxDrawdown;
-        private int roundsBet, losingStreak, longestLosingStreak, resets;
-
-        public Bankroll(double baseBet, double multiplier, Double stakeCap) {
-            if (baseBet <= 0 || multiplier <= 1.0) {
-                throw new IllegalArgumentException("baseBet>0 & multiplier>1.0");
-            }
-            this.baseBet = baseBet;
-            this.multiplier = multiplier;
-            this.stakeCap = stakeCap;
-            this.stake = baseBet;
-        }
-
-        public enum Pred {
-            TAI, XIU, SKIP
-        }
-
-        public enum Actual {
-            T, X
-        }
-
-        public void onRound(Pred prediction, Actual actual) {
-            if (prediction == Pred.SKIP) {
-                return; // không đặt thì không ghi nhận
-            }
-            roundsBet++;
-            boolean win = (prediction == Pred.TAI && actual == Actual.T)
-                    || (prediction == Pred.XIU && actual == Actual.X);
-            if (win) {
-                profit += stake;
-                losingStreak = 0;
-                stake = baseBet;
-            } else {
-                profit -= stake;
-                losingStreak++;
-                longestLosingStreak = Math.max(longestLosingStreak, losingStreak);
-                stake *= multiplier;
-                if (stakeCap != null && stake > stakeCap) {
-                    stake = baseBet;
-                    resets++;
-                }
-            }
-            if (profit > peakProfit) {
-                peakProfit = profit;
-            }
-            maxDrawdown = Math.max(maxDrawdown, peakProfit - profit);
-            maxStake = Math.max(maxStake, stake);
-        }
-
-        public int getRoundsBet() {
-            return roundsBet;
-        }
-
-        public double getCurrentStake() {
-            return stake;
-        }
-
-        public double getROI() {
-            return (roundsBet == 0) ? 0.0 : (profit / (roundsBet * baseBet));
-        }
-
-        public double getProfit() {
-            return profit;
-        }
-
-        public double requiredCapitalByLongestL() {
-            int L = Math.max(1, longestLosingStreak);
-            return (multiplier == 1.0) ? baseBet * L
-                    : baseBet * (Math.pow(multiplier, L) - 1.0) / (multiplier - 1.0);
-        }
-
-        public String summary() {
-            return String.format(
-                    "PnL=%.2f | ROI=%.2f%% | roundsBet=%d | longestL=%d | maxStake=%.2f | MDD=%.2f | resets=%d | nextStake=%.2f | requiredCapital(LLS)=%.2f",
-                    profit, getROI() * 100.0, roundsBet, longestLosingStreak, maxStake, maxDrawdown, resets, stake, requiredCapitalByLongestL()
-            );
-        }
-    }
 }